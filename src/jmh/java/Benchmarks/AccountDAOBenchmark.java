@@ -0,0 +1,40 @@
+package Benchmarks;
+
+import DAO.AccountDAO;
+import Model.Account;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * AccountDAO lookup by username at several table sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = BenchmarkData.DB_URL_ARG)
+public class AccountDAOBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int accounts;
+
+    private AccountDAO accountDAO;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.load(accounts, 0);
+        accountDAO = new AccountDAO();
+    }
+
+    @Benchmark
+    public Account findAccountByUsernameExisting() {
+        return accountDAO.findAccountByUsername("user" + ThreadLocalRandom.current().nextInt(1, accounts + 1));
+    }
+
+    @Benchmark
+    public Account findAccountByUsernameMissing() {
+        return accountDAO.findAccountByUsername("nobody" + ThreadLocalRandom.current().nextInt());
+    }
+}
@@ -0,0 +1,50 @@
+package Benchmarks;
+
+import DAO.AccountDAO;
+import Model.Account;
+import Service.AccountService;
+import Util.PasswordHasher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * AccountService registration, including its username check, and logins for unknown usernames,
+ * at several table sizes, with and without the username filter.
+ * Passwords are hashed with a single PBKDF2 iteration so the database work is what is measured;
+ * LoginBenchmark covers the hashing cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = BenchmarkData.DB_URL_ARG)
+public class AccountServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int accounts;
+
+    @Param({"true", "false"})
+    public boolean usernameFilter;
+
+    private AccountService accountService;
+    private final AtomicLong nextUser = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.load(accounts, 0);
+        System.setProperty("accounts.usernameFilter.enabled", Boolean.toString(usernameFilter));
+        accountService = new AccountService(new AccountDAO(), new PasswordHasher(1));
+    }
+
+    @Benchmark
+    public Account createNewAccount() {
+        return accountService.createNewAccount(new Account("new" + nextUser.incrementAndGet(), "password"));
+    }
+
+    @Benchmark
+    public Account loginUnknownUser() {
+        return accountService.getAccountByUsername(new Account("unknown" + nextUser.incrementAndGet(), "password"));
+    }
+}
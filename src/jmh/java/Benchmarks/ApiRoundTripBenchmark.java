@@ -0,0 +1,78 @@
+package Benchmarks;
+
+import Controller.SocialMediaController;
+import io.javalin.Javalin;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Full HTTP round trips through SocialMediaController.startAPI(), using the same
+ * java.net.http.HttpClient requests as the functional tests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = BenchmarkData.DB_URL_ARG)
+public class ApiRoundTripBenchmark {
+
+    private static final int PORT = 8089;
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private Javalin app;
+    private HttpClient webClient;
+    private HttpRequest postMessageRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.load(Math.max(1, rows / 100), rows);
+        app = new SocialMediaController().startAPI();
+        app.start(PORT);
+        webClient = HttpClient.newHttpClient();
+        postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + PORT + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"benchmark message\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.stop();
+    }
+
+    @Benchmark
+    public String postMessage() throws IOException, InterruptedException {
+        return webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    @Benchmark
+    public String getMessageByMessageId() throws IOException, InterruptedException {
+        int message_id = ThreadLocalRandom.current().nextInt(1, rows + 1);
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + PORT + "/messages/" + message_id))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    @Benchmark
+    public String getMessagesByAccountId() throws IOException, InterruptedException {
+        int account_id = ThreadLocalRandom.current().nextInt(1, Math.max(1, rows / 100) + 1);
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + PORT + "/accounts/" + account_id + "/messages"))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+}
@@ -0,0 +1,85 @@
+package Benchmarks;
+
+import Util.ConnectionUtil;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Shared dataset setup for the benchmarks.
+ * Every benchmark forks with DB_URL_ARG, so it runs against its own H2 file under target/
+ * and never touches the application database in ./h2.
+ */
+public final class BenchmarkData {
+
+    /**
+     * JVM argument that points ConnectionUtil at the benchmark database.
+     */
+    public static final String DB_URL_ARG = "-Ddb.url=jdbc:h2:./target/jmh-db/db;";
+
+    /**
+     * Timestamp of the first generated message; each following message is one second later.
+     */
+    public static final long FIRST_EPOCH = 1669947792L;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Recreate the schema and fill it with generated accounts and messages.
+     * Rows are produced inside H2 from SYSTEM_RANGE, so even 10M rows load in seconds.
+     * @param accounts number of accounts; account n has username "user" + n and password "password"
+     * @param messages number of messages, spread round-robin over the accounts
+     */
+    public static void load(int accounts, int messages) {
+        ConnectionUtil.resetTestDatabase();
+        Connection conn = ConnectionUtil.getConnection();
+        try {
+            // the fixture already holds account 1 and message 1
+            execute(conn, "DELETE FROM message");
+            execute(conn, "DELETE FROM account");
+            execute(conn, "ALTER TABLE account ALTER COLUMN account_id RESTART WITH 1");
+            execute(conn, "ALTER TABLE message ALTER COLUMN message_id RESTART WITH 1");
+
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO account(username, password) SELECT 'user' || X, 'password' FROM SYSTEM_RANGE(1, ?)")) {
+                ps.setInt(1, accounts);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO message(posted_by, message_text, time_posted_epoch) "
+                    + "SELECT MOD(X - 1, ?) + 1, 'benchmark message ' || X, ? + X FROM SYSTEM_RANGE(1, ?)")) {
+                ps.setInt(1, accounts);
+                ps.setLong(2, FIRST_EPOCH);
+                ps.setInt(3, messages);
+                ps.executeUpdate();
+            }
+            execute(conn, "ANALYZE");
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not load benchmark data", e);
+        } finally {
+            ConnectionUtil.release(conn);
+        }
+    }
+
+    /**
+     * Run a single statement on a pooled connection.
+     * @param sql the statement to run
+     */
+    public static void execute(String sql) {
+        Connection conn = ConnectionUtil.getConnection();
+        try {
+            execute(conn, sql);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not run " + sql, e);
+        } finally {
+            ConnectionUtil.release(conn);
+        }
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.execute();
+        }
+    }
+}
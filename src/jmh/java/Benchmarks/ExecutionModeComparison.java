@@ -0,0 +1,171 @@
+package Benchmarks;
+
+import Controller.SocialMediaController;
+import io.javalin.Javalin;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.eclipse.jetty.util.VirtualThreads;
+
+/**
+ * Throughput and latency of the API with a very large number of concurrent clients, once per
+ * execution mode (-Dapi.executionMode), so platform threads, virtual threads and the async
+ * pipeline can be compared.
+ *
+ * Each client keeps exactly one request in flight: as soon as a response arrives it sends the
+ * next one, alternating GET /accounts/{id}/messages and POST /messages. The clients are driven
+ * with HttpClient.sendAsync, so thousands of them need no client threads.
+ *
+ * Arguments are key=value pairs, all optional:
+ *  - modes=platform,virtual,async   execution modes to run, one after the other
+ *  - clients=10000            concurrent clients
+ *  - duration=30              measured seconds per mode
+ *  - warmup=10                seconds of load per mode before recording starts
+ *  - port=8091                port for the in-process app
+ *
+ * Virtual threads need Java 21, and the run stops before loading anything if "virtual" is asked
+ * for on an older JVM. Run with a JDK 21 java from the project root:
+ *  java -cp target/benchmarks.jar Benchmarks.ExecutionModeComparison
+ * The dataset (100 accounts, 10k messages) is reloaded into ./target/modes-db unless -Ddb.url says otherwise.
+ * Every client holds an open socket on both ends, so the open-file limit must be above 2 x clients.
+ */
+public class ExecutionModeComparison {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(2);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        String[] modes = options.getOrDefault("modes", "platform,virtual,async").split(",");
+        int clients = Integer.parseInt(options.getOrDefault("clients", "10000"));
+        long duration = Long.parseLong(options.getOrDefault("duration", "30"));
+        long warmup = Long.parseLong(options.getOrDefault("warmup", "10"));
+        int port = Integer.parseInt(options.getOrDefault("port", "8091"));
+        if (Arrays.asList(modes).contains("virtual") && !VirtualThreads.areSupported()) {
+            System.err.println("modes includes virtual, which needs Java 21; running on "
+                    + System.getProperty("java.version") + ". Use a JDK 21 java or leave virtual out of modes.");
+            System.exit(1);
+        }
+
+        // the dataset is reloaded from scratch, so never run against the application database
+        if (System.getProperty("db.url") == null) {
+            System.setProperty("db.url", "jdbc:h2:./target/modes-db/db;");
+        }
+        BenchmarkData.load(100, 10_000);
+
+        List<String> results = new ArrayList<>();
+        for (String mode : modes) {
+            System.setProperty("api.executionMode", mode);
+            Javalin app = new SocialMediaController().startAPI();
+            app.start(port);
+            try {
+                results.add(run(mode, "http://localhost:" + port, clients, warmup, duration));
+            } finally {
+                app.stop();
+            }
+        }
+
+        System.out.printf("%-9s %8s %10s %10s %10s %10s %10s %8s%n",
+                "mode", "clients", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "errors");
+        for (String result : results) {
+            System.out.println(result);
+        }
+    }
+
+    private static String run(String mode, String baseUrl, int clients, long warmupSeconds, long durationSeconds)
+            throws InterruptedException {
+        HttpClient webClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        Histogram histogram = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+        LongAdder errors = new LongAdder();
+
+        long start = System.nanoTime();
+        long recordFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = recordFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        CountDownLatch done = new CountDownLatch(clients);
+
+        for (int i = 0; i < clients; i++) {
+            new Client(webClient, baseUrl, histogram, errors, recordFrom, end, done).send();
+        }
+        done.await();
+
+        long count = histogram.getTotalCount();
+        return String.format("%-9s %8d %10.1f %10.3f %10.3f %10.3f %10.3f %8d",
+                mode, clients, count / (double) durationSeconds,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0,
+                errors.sum());
+    }
+
+    /**
+     * One simulated client: a request is sent from the completion of the previous one until the run ends.
+     */
+    private static class Client {
+        private final HttpClient webClient;
+        private final String baseUrl;
+        private final Histogram histogram;
+        private final LongAdder errors;
+        private final long recordFrom;
+        private final long end;
+        private final CountDownLatch done;
+        private boolean post;
+
+        Client(HttpClient webClient, String baseUrl, Histogram histogram, LongAdder errors,
+                long recordFrom, long end, CountDownLatch done) {
+            this.webClient = webClient;
+            this.baseUrl = baseUrl;
+            this.histogram = histogram;
+            this.errors = errors;
+            this.recordFrom = recordFrom;
+            this.end = end;
+            this.done = done;
+        }
+
+        void send() {
+            long start = System.nanoTime();
+            if (start >= end) {
+                done.countDown();
+                return;
+            }
+            int account_id = ThreadLocalRandom.current().nextInt(1, 101);
+            post = !post;
+            HttpRequest request = post
+                    ? HttpRequest.newBuilder(URI.create(baseUrl + "/messages"))
+                            .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\": " + account_id
+                                    + ", \"message_text\": \"mode comparison\", \"time_posted_epoch\": 1669947792}"))
+                            .header("Content-Type", "application/json")
+                            .timeout(Duration.ofMinutes(2))
+                            .build()
+                    : HttpRequest.newBuilder(URI.create(baseUrl + "/accounts/" + account_id + "/messages?limit=20"))
+                            .timeout(Duration.ofMinutes(2))
+                            .build();
+
+            webClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                if (start >= recordFrom) {
+                    histogram.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start), MAX_LATENCY_MICROS));
+                    if (failure != null || response.statusCode() != 200) {
+                        errors.increment();
+                    }
+                }
+                send();
+            });
+        }
+    }
+}
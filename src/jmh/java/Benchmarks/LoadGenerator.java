@@ -0,0 +1,352 @@
+package Benchmarks;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Sustained-load HTTP generator for the social media API.
+ *
+ * Starts the application the same way Main does (unless url= points at one already running),
+ * then drives it from concurrency threads with a weighted mix of register, login, post, list,
+ * patch and delete requests, sent with java.net.http.HttpClient like the functional tests.
+ * After a warmup, each request's latency is recorded in an HdrHistogram per endpoint, and the
+ * p50/p99/p999 of each are printed at the end.
+ *
+ * Arguments are key=value pairs, all optional:
+ *  - duration=60            measured seconds
+ *  - warmup=10              seconds of load before recording starts
+ *  - concurrency=64         client threads
+ *  - mix=post:30,list:25,login:20,patch:10,delete:10,register:5   relative weight of each endpoint
+ *  - accounts=100           accounts registered before the run, used by login/post/list
+ *  - port=8090              port for the in-process app
+ *  - url=http://host:port   drive an app that is already running instead of starting one
+ *  - histogramDir=path      also write each endpoint's full percentile distribution (.hgrm)
+ *
+ * Run the in-process app against its own database with -Ddb.url=jdbc:h2:./target/loadgen-db/db
+ */
+public class LoadGenerator {
+
+    private static final String[] ENDPOINTS = {"register", "login", "post", "list", "patch", "delete"};
+
+    /**
+     * Longest latency a histogram can record, in microseconds.
+     */
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final String baseUrl;
+    private final int concurrency;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final int accounts;
+    private final String[] weightedEndpoints;
+
+    private final HttpClient webClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final Map<String, Histogram> histograms = new LinkedHashMap<>();
+    private final Map<String, LongAdder> errors = new HashMap<>();
+    private final List<Integer> accountIds = new ArrayList<>();
+    private final ConcurrentLinkedDeque<Integer> messageIds = new ConcurrentLinkedDeque<>();
+    private final AtomicLong nextUser = new AtomicLong();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    private volatile long recordFrom;
+
+    public LoadGenerator(String baseUrl, int concurrency, long warmupSeconds, long durationSeconds,
+            int accounts, Map<String, Integer> mix) {
+        this.baseUrl = baseUrl;
+        this.concurrency = concurrency;
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(warmupSeconds);
+        this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+        this.accounts = accounts;
+
+        List<String> weighted = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                weighted.add(entry.getKey());
+            }
+        }
+        if (weighted.isEmpty()) {
+            throw new IllegalArgumentException("The request mix must give at least one endpoint a weight");
+        }
+        this.weightedEndpoints = weighted.toArray(new String[0]);
+
+        for (String endpoint : ENDPOINTS) {
+            histograms.put(endpoint, new ConcurrentHistogram(MAX_LATENCY_MICROS, 3));
+            errors.put(endpoint, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected key=value but got " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+
+        Javalin app = null;
+        String url = options.get("url");
+        if (url == null) {
+            int port = Integer.parseInt(options.getOrDefault("port", "8090"));
+            ConnectionUtil.migrateDatabase();
+            app = new SocialMediaController().startAPI();
+            app.start(port);
+            url = "http://localhost:" + port;
+        }
+
+        try {
+            LoadGenerator generator = new LoadGenerator(url,
+                    Integer.parseInt(options.getOrDefault("concurrency", "64")),
+                    Long.parseLong(options.getOrDefault("warmup", "10")),
+                    Long.parseLong(options.getOrDefault("duration", "60")),
+                    Integer.parseInt(options.getOrDefault("accounts", "100")),
+                    parseMix(options.getOrDefault("mix", "post:30,list:25,login:20,patch:10,delete:10,register:5")));
+            generator.run();
+            generator.report(System.out);
+            if (options.containsKey("histogramDir")) {
+                generator.writeHistograms(Path.of(options.get("histogramDir")));
+            }
+        } finally {
+            if (app != null) {
+                app.stop();
+            }
+        }
+    }
+
+    /**
+     * Register the accounts and seed messages, then run the load until warmup + duration has passed.
+     */
+    public void run() throws InterruptedException {
+        for (int i = 0; i < accounts; i++) {
+            int account_id = register();
+            if (account_id > 0) {
+                accountIds.add(account_id);
+            }
+        }
+        if (accountIds.isEmpty()) {
+            throw new IllegalStateException("Could not register any account at " + baseUrl);
+        }
+        for (int i = 0; i < accounts; i++) {
+            post();
+        }
+
+        long start = System.nanoTime();
+        recordFrom = start + warmupNanos;
+        long end = recordFrom + durationNanos;
+
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            Thread worker = new Thread(() -> work(end), "load-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    /**
+     * Print requests, errors, throughput and latency percentiles per endpoint, in milliseconds.
+     * @param out where to print the report
+     */
+    public void report(PrintStream out) {
+        double seconds = durationNanos / 1e9;
+        out.printf("%-9s %10s %8s %10s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            Histogram histogram = entry.getValue();
+            long count = histogram.getTotalCount();
+            if (count == 0) {
+                continue;
+            }
+            out.printf("%-9s %10d %8d %10.1f %10.3f %10.3f %10.3f %10.3f%n",
+                    entry.getKey(), count, errors.get(entry.getKey()).sum(), count / seconds,
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0);
+        }
+    }
+
+    /**
+     * Write each endpoint's full percentile distribution, in milliseconds, as endpoint.hgrm.
+     * @param dir the directory to write to; created if missing
+     */
+    public void writeHistograms(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            try (PrintStream out = new PrintStream(dir.resolve(entry.getKey() + ".hgrm").toFile())) {
+                entry.getValue().outputPercentileDistribution(out, 1000.0);
+            } catch (FileNotFoundException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private void work(long end) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < end) {
+            String endpoint = weightedEndpoints[random.nextInt(weightedEndpoints.length)];
+            long start = System.nanoTime();
+            boolean ok;
+            switch (endpoint) {
+                case "register":
+                    ok = register() > 0;
+                    break;
+                case "login":
+                    ok = login();
+                    break;
+                case "post":
+                    ok = post();
+                    break;
+                case "list":
+                    ok = list();
+                    break;
+                case "patch":
+                    ok = patch();
+                    break;
+                default:
+                    ok = delete();
+                    break;
+            }
+            long elapsed = System.nanoTime() - start;
+
+            if (start >= recordFrom) {
+                histograms.get(endpoint).recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(elapsed), MAX_LATENCY_MICROS));
+                if (!ok) {
+                    errors.get(endpoint).increment();
+                }
+            }
+        }
+    }
+
+    private int register() {
+        String body = "{\"username\": \"" + username(nextUser.incrementAndGet()) + "\", \"password\": \"password\"}";
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/register"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json"));
+        return response != null && response.statusCode() == 200 ? intField(response.body(), "account_id") : -1;
+    }
+
+    private boolean login() {
+        // accounts registered before the run are users 1..accounts
+        long user = ThreadLocalRandom.current().nextLong(1, accounts + 1);
+        String body = "{\"username\": \"" + username(user) + "\", \"password\": \"password\"}";
+        return isOk(send(HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")));
+    }
+
+    private boolean post() {
+        String body = "{\"posted_by\": " + randomAccount() + ", \"message_text\": \"load test message\", "
+                + "\"time_posted_epoch\": " + System.currentTimeMillis() / 1000 + "}";
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json"));
+        if (!isOk(response)) {
+            return false;
+        }
+        messageIds.addLast(intField(response.body(), "message_id"));
+        return true;
+    }
+
+    private boolean list() {
+        return isOk(send(HttpRequest.newBuilder(URI.create(baseUrl + "/accounts/" + randomAccount() + "/messages")).GET()));
+    }
+
+    private boolean patch() {
+        Integer message_id = messageIds.peekLast();
+        if (message_id == null) {
+            return post();
+        }
+        return isOk(send(HttpRequest.newBuilder(URI.create(baseUrl + "/messages/" + message_id))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"patched by load test\"}"))
+                .header("Content-Type", "application/json")));
+    }
+
+    private boolean delete() {
+        Integer message_id = messageIds.pollFirst();
+        if (message_id == null) {
+            return post();
+        }
+        return isOk(send(HttpRequest.newBuilder(URI.create(baseUrl + "/messages/" + message_id)).DELETE()));
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) {
+        try {
+            return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private boolean isOk(HttpResponse<String> response) {
+        return response != null && response.statusCode() == 200;
+    }
+
+    private int randomAccount() {
+        return accountIds.get(ThreadLocalRandom.current().nextInt(accountIds.size()));
+    }
+
+    private String username(long user) {
+        return "load_" + runId + "_" + user;
+    }
+
+    /**
+     * Read a top-level integer field from a flat JSON object without a full parse.
+     */
+    private static int intField(String json, String field) {
+        int at = json.indexOf("\"" + field + "\"");
+        if (at < 0) {
+            return -1;
+        }
+        int start = json.indexOf(':', at) + 1;
+        while (start < json.length() && Character.isWhitespace(json.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while (end < json.length() && Character.isDigit(json.charAt(end))) {
+            end++;
+        }
+        return end > start ? Integer.parseInt(json.substring(start, end)) : -1;
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split(":");
+            String endpoint = pair[0];
+            if (!List.of(ENDPOINTS).contains(endpoint)) {
+                throw new IllegalArgumentException("Unknown endpoint " + endpoint + " in mix, expected one of " + List.of(ENDPOINTS));
+            }
+            weights.put(endpoint, Integer.parseInt(pair[1]));
+        }
+        return weights;
+    }
+}
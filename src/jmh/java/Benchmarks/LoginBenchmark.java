@@ -0,0 +1,53 @@
+package Benchmarks;
+
+import Model.Account;
+import Service.AccountService;
+import DAO.AccountDAO;
+import Util.PasswordHasher;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * AccountService login latency at several PBKDF2 costs, with and without the verified-credential
+ * cache. Sampled rather than averaged, so the JMH output shows p50, p99 and p99.9 for each cost;
+ * pick the highest iteration count whose p99 (without the cache) fits the login budget and set
+ * it with -Dauth.pbkdf2.iterations.
+ *
+ * Every account holds a hash of "password" at the cost being measured. With the cache on, the
+ * same 100 accounts log in over and over, so nearly every login is a cache hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = BenchmarkData.DB_URL_ARG)
+public class LoginBenchmark {
+
+    private static final int ACCOUNTS = 100;
+
+    @Param({"100000", "310000", "600000"})
+    public int iterations;
+
+    @Param({"true", "false"})
+    public boolean verifiedCache;
+
+    private AccountService accountService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.load(ACCOUNTS, 0);
+        PasswordHasher passwordHasher = new PasswordHasher(iterations);
+        BenchmarkData.execute("UPDATE account SET password = '" + passwordHasher.hash("password") + "'");
+
+        System.setProperty("auth.verifiedCache.ttlSeconds", verifiedCache ? "60" : "0");
+        accountService = new AccountService(new AccountDAO(), passwordHasher);
+    }
+
+    @Benchmark
+    public Account login() {
+        int account_id = ThreadLocalRandom.current().nextInt(1, ACCOUNTS + 1);
+        return accountService.getAccountByUsername(new Account("user" + account_id, "password"));
+    }
+}
@@ -0,0 +1,47 @@
+package Benchmarks;
+
+import DAO.MessageDAO;
+import Model.Message;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * MessageDAO insert, lookup by id and full scan at several table sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = BenchmarkData.DB_URL_ARG)
+public class MessageDAOBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private MessageDAO messageDAO;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.load(Math.max(1, rows / 100), rows);
+        messageDAO = new MessageDAO();
+    }
+
+    @Benchmark
+    public Message insertMessage() {
+        return messageDAO.insertMessage(new Message(1, "benchmark insert", BenchmarkData.FIRST_EPOCH));
+    }
+
+    @Benchmark
+    public Message findMessageByMessageId() {
+        return messageDAO.findMessageByMessageId(ThreadLocalRandom.current().nextInt(1, rows + 1));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Message> findAllMessages() {
+        return messageDAO.findAllMessages();
+    }
+}
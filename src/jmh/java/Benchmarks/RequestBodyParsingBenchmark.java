@@ -0,0 +1,54 @@
+package Benchmarks;
+
+import Controller.JsonSupport;
+import Model.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Parsing a POST /messages or PATCH /messages/{message_id} body: the old path, which reads the
+ * request into a String with ctx.body() and parses that with a plain ObjectMapper, against
+ * JsonSupport.read(), which parses the request stream through the cached ObjectReader.
+ *
+ * Run with -prof gc and compare gc.alloc.rate.norm, the bytes allocated per parsed body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestBodyParsingBenchmark {
+
+    @Param({"post", "patch"})
+    public String body;
+
+    private final ObjectMapper plainMapper = new ObjectMapper();
+    private byte[] bytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String json = body.equals("post")
+                ? "{\"posted_by\":1, \"message_text\": \"" + "a typical message ".repeat(8) + "\", \"time_posted_epoch\": 1669947792}"
+                : "{\"message_text\": \"" + "a typical message ".repeat(8) + "\"}";
+        bytes = json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Message bodyStringThenParse() throws IOException {
+        InputStream in = new ByteArrayInputStream(bytes);
+        // what ctx.body() does: Kotlin's readBytes() copies the stream through 8 KiB buffers, then the bytes are decoded into a String
+        String body = new String(kotlin.io.ByteStreamsKt.readBytes(in), StandardCharsets.UTF_8);
+        return plainMapper.readValue(body, Message.class);
+    }
+
+    @Benchmark
+    public Message streamThroughCachedReader() throws IOException {
+        return JsonSupport.read(new ByteArrayInputStream(bytes), bytes.length, JsonSupport.MESSAGE_READER, JsonSupport.MAX_BODY_BYTES);
+    }
+}
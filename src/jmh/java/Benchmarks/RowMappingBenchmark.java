@@ -0,0 +1,66 @@
+package Benchmarks;
+
+import DAO.JdbcTemplate;
+import DAO.MessageDAO;
+import DAO.MessageRowMapper;
+import DAO.RowMapper;
+import DAO.StatementBinder;
+import Model.Message;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of turning message rows into Message objects: "SELECT *" read by column label, as the DAOs
+ * did before, against the explicit projection read by position that they use now.
+ *
+ * The two scan benchmarks stream the whole table through JdbcTemplate.queryForEach() into a
+ * Blackhole, so they differ only in the select list and the row mapper; divide by rows for the
+ * per-row cost. findAllMessages is the DAO method itself, collecting the list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {BenchmarkData.DB_URL_ARG, "-Xmx2g"})
+public class RowMappingBenchmark {
+
+    /**
+     * The mapping the DAOs used before: every column looked up by its label on every row.
+     */
+    private static final RowMapper<Message> BY_LABEL = rs -> new Message(rs.getInt("message_id"),
+            rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+
+    private static final RowMapper<Message> BY_POSITION = new MessageRowMapper();
+
+    @Param({"1000000"})
+    public int rows;
+
+    private JdbcTemplate jdbc;
+    private MessageDAO messageDAO;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.load(Math.max(1, rows / 100), rows);
+        jdbc = new JdbcTemplate();
+        messageDAO = new MessageDAO();
+    }
+
+    @Benchmark
+    public int selectStarByLabel(Blackhole blackhole) {
+        return jdbc.queryForEach("SELECT * FROM message", StatementBinder.NONE, BY_LABEL, blackhole::consume);
+    }
+
+    @Benchmark
+    public int projectionByPosition(Blackhole blackhole) {
+        return jdbc.queryForEach("SELECT " + MessageRowMapper.COLUMNS + " FROM message", StatementBinder.NONE,
+                BY_POSITION, blackhole::consume);
+    }
+
+    @Benchmark
+    public List<Message> findAllMessages() {
+        return messageDAO.findAllMessages();
+    }
+}
@@ -0,0 +1,75 @@
+package Benchmarks;
+
+import DAO.MessageDAO;
+import Model.Message;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Per-user timeline latency for each set of message indexes the schema has had. Both benchmarks go
+ * through MessageDAO, so they run exactly the SQL the API runs, and the planner picks the index itself.
+ *
+ * The indexes param selects what is on the message table besides the posted_by foreign key index:
+ *  - none: nothing else
+ *  - V2: (posted_by, time_posted_epoch desc) and (time_posted_epoch), as the V2 migration created them
+ *  - V3: (posted_by, message_id), the index the V3 migration replaced them with
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = BenchmarkData.DB_URL_ARG)
+public class TimelineQueryBenchmark {
+
+    /**
+     * Page size of GET /accounts/{account_id}/messages when "after" is given without "limit".
+     */
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    @Param({"none", "V2", "V3"})
+    public String indexes;
+
+    private int accounts;
+    private MessageDAO messageDAO;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        accounts = Math.max(1, rows / 1000);
+        BenchmarkData.load(accounts, rows);
+        BenchmarkData.execute("DROP INDEX IF EXISTS message_posted_by_id_idx");
+        BenchmarkData.execute("DROP INDEX IF EXISTS message_posted_by_time_idx");
+        BenchmarkData.execute("DROP INDEX IF EXISTS message_time_posted_idx");
+        if (indexes.equals("V2")) {
+            BenchmarkData.execute("CREATE INDEX message_posted_by_time_idx ON message (posted_by, time_posted_epoch DESC)");
+            BenchmarkData.execute("CREATE INDEX message_time_posted_idx ON message (time_posted_epoch)");
+        } else if (indexes.equals("V3")) {
+            BenchmarkData.execute("CREATE INDEX message_posted_by_id_idx ON message (posted_by, message_id)");
+        }
+        BenchmarkData.execute("ANALYZE");
+        messageDAO = new MessageDAO();
+    }
+
+    /**
+     * GET /accounts/{account_id}/messages: every message of a random user.
+     */
+    @Benchmark
+    public List<Message> findAllMessagesWrittenByUser() {
+        return messageDAO.findAllMessagesWrittenByUser(ThreadLocalRandom.current().nextInt(1, accounts + 1));
+    }
+
+    /**
+     * GET /accounts/{account_id}/messages?after=: one page of a random user's messages, starting at a
+     * random point in the table.
+     */
+    @Benchmark
+    public List<Message> findMessagesWrittenByUserAfter() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return messageDAO.findMessagesWrittenByUserAfter(random.nextInt(1, accounts + 1), random.nextInt(rows), PAGE_SIZE);
+    }
+}
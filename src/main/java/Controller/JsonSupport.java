@@ -0,0 +1,187 @@
+package Controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import Model.Account;
+import Model.Message;
+import Model.MessageBatchResult;
+import Model.MessagePage;
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+import io.javalin.json.JavalinJackson;
+import io.javalin.json.JsonMapper;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * The JsonSupport class is the controller's single JSON layer.
+ *
+ * One ObjectMapper is configured here and shared by the handlers and by Javalin itself (see
+ * javalinMapper()), and the readers and writers for the types the API exchanges are built from it
+ * once. ObjectReader and ObjectWriter are immutable and thread-safe, and building them up front
+ * means the per-type serializer lookup is not repeated on every request.
+ *
+ * read() parses request bodies straight from the request input stream, and write() serializes
+ * straight into the response output stream, so neither a request nor a response body ever
+ * exists as a String.
+ */
+public class JsonSupport {
+
+    /**
+     * The shared mapper. Writers neither flush nor close the response stream, so Jetty can still
+     * buffer a small body and send it with a Content-Length once the handler returns.
+     */
+    public static final ObjectMapper MAPPER = new ObjectMapper()
+            .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    public static final ObjectReader ACCOUNT_READER = MAPPER.readerFor(Account.class);
+    public static final ObjectReader MESSAGE_READER = MAPPER.readerFor(Message.class);
+    public static final ObjectReader MESSAGE_LIST_READER = MAPPER.readerFor(new TypeReference<List<Message>>(){});
+
+    static final ObjectWriter ACCOUNT_WRITER = MAPPER.writerFor(Account.class);
+    static final ObjectWriter MESSAGE_WRITER = MAPPER.writerFor(Message.class);
+    static final ObjectWriter MESSAGE_LIST_WRITER = MAPPER.writerFor(new TypeReference<List<Message>>(){});
+    static final ObjectWriter MESSAGE_PAGE_WRITER = MAPPER.writerFor(MessagePage.class);
+    static final ObjectWriter BATCH_RESULT_LIST_WRITER = MAPPER.writerFor(new TypeReference<List<MessageBatchResult>>(){});
+
+    /**
+     * Largest accepted body for a single account or message, set with -Dapi.maxBodyBytes.
+     * Every field is at most 255 characters, so the default leaves plenty of room.
+     */
+    public static final long MAX_BODY_BYTES = Long.getLong("api.maxBodyBytes", 16 * 1024);
+
+    /**
+     * Largest accepted body for POST /messages/batch, set with -Dapi.maxBatchBodyBytes.
+     */
+    public static final long MAX_BATCH_BODY_BYTES = Long.getLong("api.maxBatchBodyBytes", 1024 * 1024);
+
+    /**
+     * @return a Javalin JsonMapper backed by the shared ObjectMapper, for config.jsonMapper(...)
+     */
+    static JsonMapper javalinMapper() {
+        return new JavalinJackson(MAPPER);
+    }
+
+    /**
+     * Parse the request body directly from the request input stream.
+     * A declared Content-Length over the cap is rejected before anything is read, and a body
+     * without one is cut off as soon as it passes the cap.
+     * @param ctx The Javalin Context object
+     * @param reader the pre-built reader for the body's type
+     * @param maxBytes the largest body to accept
+     * @return the parsed body
+     * @throws BodyTooLargeException if the body is larger than maxBytes
+     * @throws IOException if the body is not valid JSON for the type
+     */
+    static <T> T read(Context ctx, ObjectReader reader, long maxBytes) throws IOException {
+        return read(ctx.bodyInputStream(), ctx.contentLength(), reader, maxBytes);
+    }
+
+    /**
+     * Parse a JSON body from a stream, reading at most maxBytes from it.
+     * @param in the body
+     * @param contentLength the declared length of the body, or -1 if unknown
+     * @param reader the pre-built reader for the body's type
+     * @param maxBytes the largest body to accept
+     * @return the parsed body
+     * @throws BodyTooLargeException if the body is larger than maxBytes
+     * @throws IOException if the body is not valid JSON for the type
+     */
+    public static <T> T read(InputStream in, long contentLength, ObjectReader reader, long maxBytes) throws IOException {
+        if (contentLength > maxBytes) {
+            throw new BodyTooLargeException(maxBytes);
+        }
+        return reader.readValue(new BoundedInputStream(in, maxBytes));
+    }
+
+    /**
+     * Serialize a value as the JSON response body, writing directly to the response output stream.
+     * @param ctx The Javalin Context object
+     * @param writer the pre-built writer for the value's type
+     * @param value the value to write
+     * @throws IOException if the response could not be written
+     */
+    static void write(Context ctx, ObjectWriter writer, Object value) throws IOException {
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        writer.writeValue(ctx.outputStream(), value);
+    }
+
+    /**
+     * Write an already encoded JSON body as the response, with its Content-Length.
+     * @param ctx The Javalin Context object
+     * @param body the encoded body
+     * @throws IOException if the response could not be written
+     */
+    static void writeBytes(Context ctx, byte[] body) throws IOException {
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        ctx.res().setContentLength(body.length);
+        ctx.outputStream().write(body);
+    }
+
+    /**
+     * Thrown when a request body is larger than its cap. The controller answers it with a 413.
+     */
+    public static class BodyTooLargeException extends IOException {
+        BodyTooLargeException(long maxBytes) {
+            super("Request body is larger than " + maxBytes + " bytes");
+        }
+    }
+
+    /**
+     * Passes reads through until more than maxBytes have been read, then fails.
+     */
+    private static class BoundedInputStream extends FilterInputStream {
+        private final long maxBytes;
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+            this.remaining = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public void close() {
+            // the servlet container owns the request stream
+        }
+
+        private void count(long n) throws BodyTooLargeException {
+            remaining -= n;
+            if (remaining < 0) {
+                throw new BodyTooLargeException(maxBytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package Controller;
+
+import Util.CacheStats;
+import Util.LruCache;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * The ResponseCache class keeps the encoded JSON bodies of hot GET responses, with a strong ETag
+ * for each, so a repeated request is answered by copying bytes instead of serializing again, and
+ * a client that already has the body gets a 304.
+ *
+ * Only bodies built from a read the database answered are put here. A failed read throws a
+ * DataAccessException before anything is encoded, so an error is never cached or given an ETag
+ * that a later If-None-Match could turn into a 304.
+ *
+ * Entries are dropped by invalidate() when the data behind them changes. A generation counter
+ * bumped by every invalidation keeps a response that was built from data read before the change
+ * from being cached after it, the same way MessageService guards its message cache.
+ */
+class ResponseCache {
+
+    private final LruCache<String, CachedResponse> responses;
+    private final int maxBodyBytes;
+
+    private volatile long generation;
+    private final Object lock = new Object();
+
+    /**
+     * @param maxSize the most responses to keep
+     * @param maxBodyBytes the largest body worth keeping; bigger ones are served but not cached
+     */
+    ResponseCache(int maxSize, int maxBodyBytes) {
+        this.responses = new LruCache<>(maxSize);
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    /**
+     * Build a cache from -Dcache.responses.maxSize (default 10000) and
+     * -Dcache.responses.maxBodyBytes (default 64 KiB).
+     * @return the cache to use for the application
+     */
+    static ResponseCache fromSystemProperties() {
+        return new ResponseCache(Integer.getInteger("cache.responses.maxSize", 10_000),
+                Integer.getInteger("cache.responses.maxBodyBytes", 64 * 1024));
+    }
+
+    /**
+     * @param key the response's key
+     * @return the cached response, or null
+     */
+    CachedResponse get(String key) {
+        return responses.get(key);
+    }
+
+    /**
+     * Take the stamp to pass to put() before reading the data a response is built from.
+     * @return the current generation
+     */
+    long stamp() {
+        return generation;
+    }
+
+    /**
+     * Wrap an encoded body with its ETag and cache it, unless something was invalidated since
+     * stamp was taken or the body is too large. Only call this with the result of a successful read.
+     * @param key the response's key
+     * @param stamp what stamp() returned before the data was read
+     * @param body the encoded response body
+     * @return the response, whether it was cached or not
+     */
+    CachedResponse put(String key, long stamp, byte[] body) {
+        CachedResponse response = new CachedResponse(body);
+        if (body.length <= maxBodyBytes) {
+            synchronized (lock) {
+                if (generation == stamp) {
+                    responses.put(key, response);
+                }
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Drop responses whose data has changed.
+     * @param keys the keys of the responses to drop
+     */
+    void invalidate(String... keys) {
+        synchronized (lock) {
+            generation++;
+            for (String key : keys) {
+                responses.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * @return hit, miss and eviction counts of the cache
+     */
+    CacheStats getStats() {
+        return responses.getStats();
+    }
+
+    /**
+     * An encoded response body and its strong ETag, derived from the body's SHA-256.
+     */
+    static class CachedResponse {
+        final byte[] body;
+        final String etag;
+
+        CachedResponse(byte[] body) {
+            this.body = body;
+            this.etag = "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(sha256(body)) + "\"";
+        }
+
+        /**
+         * @param ifNoneMatch the request's If-None-Match header, or null
+         * @return true if the client already holds this body and should get a 304
+         */
+        boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                String candidate = tag.strip();
+                // If-None-Match uses the weak comparison, so a W/ prefix does not matter
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static byte[] sha256(byte[] body) {
+            try {
+                return MessageDigest.getInstance("SHA-256").digest(body);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+    }
+}
@@ -1,14 +1,37 @@
 package Controller;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import DAO.DataAccessException;
 import Service.AccountService;
 import Service.MessageService;
+import Util.CacheStats;
+import Util.Counter;
+import Util.MetricsRegistry;
+import Util.Timer;
+import Util.TokenSigner;
 import Model.Account;
 import Model.Message;
+import Model.MessageBatchResult;
+import Model.MessagePage;
 import io.javalin.Javalin;
+import io.javalin.config.JavalinConfig;
+import io.javalin.http.ContentType;
 import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.VirtualThreads;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 
 /**
@@ -17,7 +40,46 @@ import java.util.List;
 public class SocialMediaController {
     private AccountService accountService;
     private MessageService messageService;
-    ObjectMapper objMapper = new ObjectMapper();
+    private TokenSigner tokenSigner;
+
+    /**
+     * Encoded bodies of GET /messages/{message_id} and GET /accounts/{account_id}/messages,
+     * dropped whenever a message they were built from is created, updated or deleted.
+     */
+    private ResponseCache responseCache;
+
+    /**
+     * Response header a successful login puts the session token in. Clients send it back as
+     * "Authorization: Bearer <token>".
+     */
+    static final String AUTH_TOKEN_HEADER = "X-Auth-Token";
+
+    /**
+     * Page size used when a paginated list request gives "after" but no "limit".
+     */
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * How requests are run, set with -Dapi.executionMode:
+     *  - "platform" (default): Jetty's pool of platform threads, which caps how many requests run at once.
+     *  - "virtual": every request on its own virtual thread, so the connection pool is the only limit
+     *    on how many requests wait on the database at once. Needs a Java 21 runtime; on an older one
+     *    the app refuses to start.
+     *  - "async": handlers call the CompletableFuture variants of the services, which run on the
+     *    bounded DbExecutor, and hand the future to ctx.future(), so Jetty threads never wait on JDBC.
+     *    When the executor is saturated the request is refused with an empty 503.
+     */
+    static final String EXECUTION_MODE_PROPERTY = "api.executionMode";
+
+    /**
+     * Request attribute holding the route timing of a request whose response is written when a future completes.
+     */
+    private static final String ROUTE_TIMING_ATTRIBUTE = "route-timing";
+
+    /**
+     * True when the handlers run in "async" mode.
+     */
+    private boolean asyncMode;
 
     /**
      * Constructor for the SocialMediaController
@@ -25,6 +87,10 @@ public class SocialMediaController {
     public SocialMediaController() {
         this.accountService = new AccountService();
         this.messageService = new MessageService();
+        this.tokenSigner = TokenSigner.fromSystemProperties();
+        this.responseCache = ResponseCache.fromSystemProperties();
+        this.messageService.addMutationListener(message ->
+                responseCache.invalidate(messageKey(message.getMessage_id()), timelineKey(message.getPosted_by())));
     }
 
     /**
@@ -33,38 +99,263 @@ public class SocialMediaController {
      * @return a Javalin app object which defines the behavior of the Javalin controller.
     */
     public Javalin startAPI() {
-        Javalin app = Javalin.create();
+        String executionMode = System.getProperty(EXECUTION_MODE_PROPERTY, "platform");
+        asyncMode = executionMode.equals("async");
+        Javalin app = Javalin.create(config -> {
+            config.jsonMapper(JsonSupport.javalinMapper());
+            configureExecutionMode(config, executionMode);
+        });
 
-        app.post("/register", this::postRegisterHandler);
-        app.post("/login", this::postLoginHandler);               
-        
-        app.post("/messages", this::postMessagesHandler);
-        app.get("/messages", this::getMessagesHandler);
-        app.get("messages/{message_id}", this::getMessageByMessageIdHandler);
-        app.delete("messages/{message_id}", this::deleteMessageByMessageIdHandler);
-        app.patch("messages/{message_id}", this::patchMessageByMessageIdHandler);
+        app.post("/register", timed("POST /register", this::postRegisterHandler));
+        app.post("/login", timed("POST /login", this::postLoginHandler));
+
+        app.post("/messages", timed("POST /messages", this::postMessagesHandler));
+        app.post("/messages/batch", timed("POST /messages/batch", this::postMessagesBatchHandler));
+        app.get("/messages", timed("GET /messages", this::getMessagesHandler));
+        app.get("messages/{message_id}", timed("GET /messages/{message_id}", this::getMessageByMessageIdHandler));
+        app.delete("messages/{message_id}", timed("DELETE /messages/{message_id}", this::deleteMessageByMessageIdHandler));
+        app.patch("messages/{message_id}", timed("PATCH /messages/{message_id}", this::patchMessageByMessageIdHandler));
+
+        app.get("accounts/{account_id}/messages", timed("GET /accounts/{account_id}/messages", this::getMessagesByAccountIdHandler));
+
+        // an oversized request body is refused with an empty 413
+        app.exception(JsonSupport.BodyTooLargeException.class, (e, ctx) -> ctx.status(413));
+        // a saturated DB or password-hashing executor sheds the request instead of queueing it
+        app.exception(RejectedExecutionException.class, (e, ctx) -> ctx.status(503));
+        // a forged, expired or malformed bearer token is refused with an empty 401
+        app.exception(InvalidTokenException.class, (e, ctx) -> ctx.status(401));
+        // a query that could not be run is an empty 500, or a cut connection once a streamed body has started
+        app.exception(DataAccessException.class, (e, ctx) -> failResponse(ctx, e));
+
+        registerServiceGauges(MetricsRegistry.DEFAULT);
+        app.get("/metrics", this::getMetricsHandler);
+
+        // write out messages still waiting in the write-behind queue and stop its writer thread
+        app.events(event -> event.serverStopping(messageService::close));
 
-        app.get("accounts/{account_id}/messages", this::getMessagesByAccountIdHandler);
-        
         return app;
     }
         
+    /**
+     * Set up the Jetty server for the requested execution mode.
+     * In "virtual" mode Jetty still accepts and selects on its own platform threads, but hands every
+     * request to a new virtual thread, which unmounts from its carrier while it waits for a connection
+     * or for JDBC instead of holding a pool thread. The mode needs a JVM with virtual threads; on an
+     * older one startup fails rather than quietly serving on the platform pool.
+     * @param config the Javalin config being built
+     * @param mode the execution mode, "platform", "virtual" or "async"
+     * @throws IllegalStateException if "virtual" is asked for and the JVM has no virtual threads
+     */
+    private void configureExecutionMode(JavalinConfig config, String mode) {
+        if (!mode.equals("virtual")) {
+            return;
+        }
+        if (!VirtualThreads.areSupported()) {
+            throw new IllegalStateException("-D" + EXECUTION_MODE_PROPERTY + "=virtual needs Java 21, running on "
+                    + System.getProperty("java.version"));
+        }
+        config.jetty.server(() -> {
+            QueuedThreadPool threadPool = new QueuedThreadPool();
+            threadPool.setName("JettyServerThreadPool");
+            threadPool.setUseVirtualThreads(true);
+            return new Server(threadPool);
+        });
+    }
+
+    /**
+     * Wrap a route handler so every request is recorded in the http_server_requests_seconds timer of
+     * its route, and every 4xx/5xx response or exception counted in http_server_errors_total.
+     * The timer and counter are resolved here, once per route, so requests only record.
+     * @param route the method and path template, used as the "route" label
+     * @param handler the handler to time
+     * @return the timed handler to register
+     */
+    private Handler timed(String route, Handler handler) {
+        RouteMetrics metrics = new RouteMetrics(
+                MetricsRegistry.DEFAULT.timer("http_server_requests_seconds",
+                        "Time to handle a request, per route", "route", route),
+                MetricsRegistry.DEFAULT.counter("http_server_errors_total",
+                        "Requests answered with a 4xx or 5xx status or an exception, per route", "route", route));
+        return ctx -> {
+            long start = System.nanoTime();
+            RouteTiming timing = null;
+            if (asyncMode) {
+                // respond() takes the timing over when the response is written by a future
+                timing = new RouteTiming(metrics, start);
+                ctx.attribute(ROUTE_TIMING_ATTRIBUTE, timing);
+            }
+            boolean failed = true;
+            try {
+                handler.handle(ctx);
+                failed = ctx.statusCode() >= 400;
+            } finally {
+                if (timing == null || !timing.completesLater) {
+                    metrics.record(start, failed);
+                }
+            }
+        };
+    }
+
+    /**
+     * Run a service call and answer the request with its result.
+     * Normally the blocking call runs on the request thread. In "async" mode the future variant is
+     * handed to ctx.future() instead, so the request thread returns at once and the responder runs
+     * when the future completes; a RejectedExecutionException from a saturated DbExecutor is
+     * answered with an empty 503, and any other failure goes to Javalin's exception handling.
+     * @param ctx The Javalin Context object
+     * @param blocking the blocking service call
+     * @param async the CompletableFuture variant of the same call
+     * @param responder writes the response from the call's result
+     * @throws IOException if the response could not be written
+     */
+    private <T> void respond(Context ctx, Supplier<T> blocking, Supplier<CompletableFuture<T>> async,
+            Responder<T> responder) throws IOException {
+        if (!asyncMode) {
+            responder.respond(blocking.get());
+            return;
+        }
+
+        RouteTiming timing = ctx.attribute(ROUTE_TIMING_ATTRIBUTE);
+        if (timing != null) {
+            timing.completesLater = true;
+        }
+        ctx.future(() -> async.get().handle((value, failure) -> {
+            try {
+                if (failure == null) {
+                    responder.respond(value);
+                } else if (unwrap(failure) instanceof RejectedExecutionException) {
+                    ctx.status(503);
+                } else {
+                    throw new CompletionException(unwrap(failure));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                if (timing != null) {
+                    timing.metrics.record(timing.start, failure != null || ctx.statusCode() >= 400);
+                }
+            }
+            return null;
+        }));
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    /**
+     * Publish the account cache and the message write-behind queue as gauges.
+     * The services belong to this controller, so the latest controller started is the one reported.
+     * @param registry the registry to publish to
+     */
+    private void registerServiceGauges(MetricsRegistry registry) {
+        registerCacheGauges(registry, "accounts", accountService::getAccountCacheStats);
+        registerCacheGauges(registry, "verified_credentials", accountService::getVerifiedCredentialCacheStats);
+        registerCacheGauges(registry, "messages", messageService::getMessageCacheStats);
+        registerCacheGauges(registry, "timelines", messageService::getTimelineCacheStats);
+        registry.gauge("cache_bytes", "Estimated heap used by the cache", messageService::getTimelineCacheBytes, "cache", "timelines");
+        registerCacheGauges(registry, "responses", responseCache::getStats);
+        registry.gauge("account_username_filter_false_positive_rate", "Estimated chance the username filter sends a lookup for a missing username to the database",
+                accountService::getUsernameFilterFalsePositiveRate);
+
+        MessageService messages = messageService;
+        if (messages.getWriteQueueStats() != null) {
+            registry.gauge("message_write_queue_depth", "Messages waiting for the write-behind writer", () -> messages.getWriteQueueStats().getDepth());
+            registry.functionCounter("message_write_queue_flushes_total", "Batches written by the write-behind writer", () -> messages.getWriteQueueStats().getFlushes());
+            registry.functionCounter("message_write_queue_rows_total", "Messages written by the write-behind writer", () -> messages.getWriteQueueStats().getRowsFlushed());
+            registry.functionCounter("message_write_queue_failed_flushes_total", "Batches the write-behind writer had to retry one message at a time", () -> messages.getWriteQueueStats().getFailedFlushes());
+            registry.functionCounter("message_write_queue_rejected_total", "Messages written directly because the queue was full", () -> messages.getWriteQueueStats().getRejected());
+        }
+    }
+
+    /**
+     * Read the session token from an "Authorization: Bearer <token>" header.
+     * @param ctx The Javalin Context object
+     * @return the account_id the token was issued for, or null if the request carries no token
+     * @throws InvalidTokenException if the header is present but does not hold a valid token
+     */
+    private Integer bearerAccountId(Context ctx) {
+        String authorization = ctx.header("Authorization");
+        if (authorization == null) {
+            return null;
+        }
+        if (!authorization.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            throw new InvalidTokenException();
+        }
+        Integer account_id = tokenSigner.verify(authorization.substring(7).strip());
+        if (account_id == null) {
+            throw new InvalidTokenException();
+        }
+        return account_id;
+    }
+
+    /**
+     * Thrown when a request carries a session token that is forged, expired or malformed.
+     */
+    private static class InvalidTokenException extends RuntimeException {
+        InvalidTokenException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Publish the size of one cache as a gauge and its hits, misses and evictions as counters,
+     * labelled with its name.
+     * @param registry the registry to publish to
+     * @param cache the value of the "cache" label
+     * @param stats reads the cache's current statistics
+     */
+    private static void registerCacheGauges(MetricsRegistry registry, String cache, Supplier<CacheStats> stats) {
+        registry.gauge("cache_size", "Entries in the cache", () -> stats.get().getSize(), "cache", cache);
+        registry.functionCounter("cache_hits_total", "Lookups answered from the cache", () -> stats.get().getHits(), "cache", cache);
+        registry.functionCounter("cache_misses_total", "Lookups the cache could not answer", () -> stats.get().getMisses(), "cache", cache);
+        registry.functionCounter("cache_evictions_total", "Entries evicted to stay within the size bound", () -> stats.get().getEvictions(), "cache", cache);
+    }
+
+    /**
+     * Answer a request whose query failed. If nothing has been sent yet, whatever was buffered is
+     * dropped and an empty 500 is sent. Once part of the body is on the wire the status can no
+     * longer change, so the connection is aborted instead and the client sees a broken transfer.
+     * @param ctx The Javalin Context object
+     * @param failure what the query failed with
+     */
+    private static void failResponse(Context ctx, DataAccessException failure) {
+        System.out.println(failure.getMessage());
+        if (ctx.res().isCommitted()) {
+            Request.getBaseRequest(ctx.req()).getHttpChannel().abort(failure);
+            return;
+        }
+        ctx.res().resetBuffer();
+        ctx.status(500);
+    }
+
+    /**
+     * This is a get metrics handler for the /metrics endpoint.
+     * The response body holds every timer, counter and gauge in the Prometheus text format,
+     * covering each route, each DAO method, the connection pool and the caches.
+     * @param ctx The Javalin Context object
+     */
+    private void getMetricsHandler(Context ctx) {
+        ctx.status(200).contentType("text/plain; version=0.0.4; charset=utf-8").result(MetricsRegistry.DEFAULT.scrape());
+    }
+
     /**
      * This is a post register handler for the /register endpoint.
      * Returns a JSON object of the account. The response status should be 200 OK.
      * If it doesn't add a user successfully, the response status should be 400. (Client error)
      * @param ctx The Javalin Context object
-     * @throws JsonProcessingException
+     * @throws IOException if the body is not a valid account or the response could not be written
     */
-    private void postRegisterHandler(Context ctx) throws JsonProcessingException {          
-        Account account = objMapper.readValue(ctx.body(), Account.class);
-        Account newAccount = accountService.createNewAccount(account);
-        
-        if (newAccount != null) {
-            ctx.status(200).json(objMapper.writeValueAsString(newAccount));
-        } else {
-            ctx.status(400);
-        }
+    private void postRegisterHandler(Context ctx) throws IOException {
+        Account account = JsonSupport.read(ctx, JsonSupport.ACCOUNT_READER, JsonSupport.MAX_BODY_BYTES);
+
+        respond(ctx, () -> accountService.createNewAccount(account), () -> accountService.createNewAccountAsync(account), newAccount -> {
+            if (newAccount != null) {
+                JsonSupport.write(ctx.status(200), JsonSupport.ACCOUNT_WRITER, newAccount);
+            } else {
+                ctx.status(400);
+            }
+        });
     }
 
     /**
@@ -72,18 +363,21 @@ public class SocialMediaController {
      * The login will be successful if and only if :
      *  - The username and password provided in the request body JSON match a real account existing on the database.
      * Returns a JSON object of the account. The response status should be 200 OK.
+     * The X-Auth-Token response header holds a signed session token for the account.
      * If the login is not successful, the response status should be 401. (Unauthorized)
      * @param ctx The Javalin Context object
     */
-    private void postLoginHandler(Context ctx) throws JsonProcessingException {
-        Account account = objMapper.readValue(ctx.body(), Account.class);
-        Account existingAccount = accountService.getAccountByUsername(account);
+    private void postLoginHandler(Context ctx) throws IOException {
+        Account account = JsonSupport.read(ctx, JsonSupport.ACCOUNT_READER, JsonSupport.MAX_BODY_BYTES);
 
-        if(existingAccount != null) {
-            ctx.status(200).json(objMapper.writeValueAsString(existingAccount));
-        } else {
-            ctx.status(401);
-        }
+        respond(ctx, () -> accountService.getAccountByUsername(account), () -> accountService.getAccountByUsernameAsync(account), existingAccount -> {
+            if(existingAccount != null) {
+                ctx.header(AUTH_TOKEN_HEADER, tokenSigner.issue(existingAccount.getAccount_id()));
+                JsonSupport.write(ctx.status(200), JsonSupport.ACCOUNT_WRITER, existingAccount);
+            } else {
+                ctx.status(401);
+            }
+        });
     }
     
     /**
@@ -92,6 +386,8 @@ public class SocialMediaController {
      * The Jackson ObjectMapper should be used to convert the JSON  of the POST request into a Message object.
      * 
      * Checks if Posted_by refers to a real, existing user in the database.
+     * A request with a valid bearer token skips that lookup, since the token already names the
+     * account; posted_by must then be that account or the response status is 403. (Forbidden)
      * 
      * If successful, the response body should contain:
      *  - A JSON of the message, including its message_id.
@@ -102,25 +398,90 @@ public class SocialMediaController {
      * 
      * @param ctx The Javalin Context object handles the information HTTP requests and generates response objects.
      *            it is made available by the app.post() method.
-     * @throws JsonProcessingException will be thrown if there is an error in the JSON conversion to an object.
+     * @throws IOException will be thrown if there is an error in the JSON conversion to an object.
     */
-    private void postMessagesHandler(Context ctx) throws JsonProcessingException {
-        Message message = objMapper.readValue(ctx.body(), Message.class);
-        
-        // check if posted_by refers to a real, existing user.
-        Account account = this.accountService.getAccountByAccoutId(message.getPosted_by());
-        
-        Message newMessage = null;
+    private void postMessagesHandler(Context ctx) throws IOException {
+        Message message = JsonSupport.read(ctx, JsonSupport.MESSAGE_READER, JsonSupport.MAX_BODY_BYTES);
+
+        Responder<Message> created = newMessage -> {
+            if (newMessage != null) {
+                JsonSupport.write(ctx.status(200), JsonSupport.MESSAGE_WRITER, newMessage);
+            } else {
+                ctx.status(400);
+            }
+        };
 
-        if (account != null) {
-            newMessage = messageService.createNewMessage(message);
+        Integer tokenAccountId = bearerAccountId(ctx);
+        if (tokenAccountId != null) {
+            if (tokenAccountId != message.getPosted_by()) {
+                ctx.status(403);
+                return;
+            }
+            respond(ctx, () -> messageService.createNewMessage(message), () -> messageService.createNewMessageAsync(message), created);
+            return;
         }
 
-        if (newMessage != null) {
-            ctx.status(200).json(newMessage);
-        } else {
+        respond(ctx, () -> {
+            // check if posted_by refers to a real, existing user.
+            Account account = this.accountService.getAccountByAccoutId(message.getPosted_by());
+            return account != null ? messageService.createNewMessage(message) : null;
+        }, () -> accountService.getAccountByAccoutIdAsync(message.getPosted_by())
+                .thenCompose(account -> account != null
+                        ? messageService.createNewMessageAsync(message)
+                        : CompletableFuture.completedFuture(null)), created);
+    }
+
+    /**
+     * This is a post messages batch handler for the /messages/batch endpoint.
+     * Handler to post many new messages in one request. The request body is a JSON array of messages.
+     *
+     * Each message is checked with the same rules as POST /messages. The posted_by of every message
+     * is checked with one lookup for all the distinct account_ids, and all valid messages are
+     * inserted together in one transaction.
+     *
+     * If the request is a non-empty array of at most MessageService.MAX_BATCH_SIZE messages:
+     *  - The response status is 200.
+     *  - The response body is a JSON array with one result per message, in request order, holding
+     *    its index, its own status (200 created, 400 rejected, 500 not stored) and the created message.
+     * Otherwise the response status is 400. (Client error)
+     * With a valid bearer token no account is looked up, and every message must be posted by the
+     * token's account or the response status is 403. (Forbidden)
+     *
+     * @param ctx The Javalin Context object
+     * @throws IOException will be thrown if there is an error in the JSON conversion to an object.
+    */
+    private void postMessagesBatchHandler(Context ctx) throws IOException {
+        List<Message> messages = JsonSupport.read(ctx, JsonSupport.MESSAGE_LIST_READER, JsonSupport.MAX_BATCH_BODY_BYTES);
+        if (messages == null || messages.isEmpty() || messages.size() > MessageService.MAX_BATCH_SIZE) {
             ctx.status(400);
+            return;
         }
+
+        // check every distinct posted_by in one go
+        Set<Integer> postedBy = new HashSet<>();
+        for (Message message : messages) {
+            if (message != null) {
+                postedBy.add(message.getPosted_by());
+            }
+        }
+
+        Integer tokenAccountId = bearerAccountId(ctx);
+        if (tokenAccountId != null) {
+            if (!Set.of(tokenAccountId).containsAll(postedBy)) {
+                ctx.status(403);
+                return;
+            }
+            Set<Integer> existingAccountIds = Set.of(tokenAccountId);
+            respond(ctx, () -> messageService.createNewMessages(messages, existingAccountIds),
+                    () -> messageService.createNewMessagesAsync(messages, existingAccountIds),
+                    results -> JsonSupport.write(ctx.status(200), JsonSupport.BATCH_RESULT_LIST_WRITER, results));
+            return;
+        }
+
+        respond(ctx, () -> messageService.createNewMessages(messages, accountService.getExistingAccountIds(postedBy)),
+                () -> accountService.getExistingAccountIdsAsync(postedBy)
+                        .thenCompose(existingAccountIds -> messageService.createNewMessagesAsync(messages, existingAccountIds)),
+                results -> JsonSupport.write(ctx.status(200), JsonSupport.BATCH_RESULT_LIST_WRITER, results));
     }
 
     /**
@@ -129,11 +490,46 @@ public class SocialMediaController {
      * The response body should contain a JSON representation of a list containing all messages retrieved from the database.
      * It is expected for the list to simply be empty if there are no messages.
      * The response status should always be 200, which is the default.
+     *
+     * If the "after" or "limit" query parameter is given, only one page is returned instead:
+     *  - The response body is a JSON object with the "messages" of the page and the "next_cursor"
+     *    to pass as "after" for the next page (null on the last page).
+     *  - A cursor or limit that is not a number, or a limit below 1, gives a 400. (Client error)
+     * Without them the full list is streamed straight from the database to the response. If the
+     * query fails part way, the connection is aborted rather than the array closed, so the client
+     * can not mistake a truncated list for the whole one.
+     * @param ctx The Javalin Context object
+     * @throws IOException if the response could not be written
+     */
+    private void getMessagesHandler(Context ctx) throws IOException {
+        if (isPageRequest(ctx)) {
+            Integer after = pageAfter(ctx);
+            Integer limit = pageLimit(ctx);
+            if (after == null || limit == null) {
+                ctx.status(400);
+                return;
+            }
+            respond(ctx, () -> messageService.getMessagesPage(after, limit), () -> messageService.getMessagesPageAsync(after, limit),
+                    page -> JsonSupport.write(ctx.status(200), JsonSupport.MESSAGE_PAGE_WRITER, page));
+            return;
+        }
+
+        streamAllMessages(ctx);
+    }
+
+    /**
+     * Write every message to the response as a JSON array while the rows are still being read,
+     * instead of building the whole list first. Memory use stays the same whatever the table size,
+     * and the first row is flushed as soon as it is written so the client starts receiving data right away.
      * @param ctx The Javalin Context object
+     * @throws IOException if the response could not be written
      */
-    private void getMessagesHandler(Context ctx) {
-        List<Message> messages = messageService.getAllMessages();
-        ctx.status(200).json(messages);
+    private void streamAllMessages(Context ctx) throws IOException {
+        MessageArrayWriter arrayWriter = new MessageArrayWriter(ctx);
+        respond(ctx, () -> {
+            messageService.streamAllMessages(arrayWriter);
+            return null;
+        }, () -> messageService.streamAllMessagesAsync(arrayWriter), done -> arrayWriter.finish());
     }
 
     /**
@@ -141,17 +537,25 @@ public class SocialMediaController {
      * The response body should contain a JSON representation of the message identified by the message_id.
      * It is expected for the response body to simply be empty if there is no such message.
      * The response status should always be 200, which is the default.
+     * A found message is sent with an ETag, and a request whose If-None-Match names it gets an empty 304.
      * @param ctx The Javalin Context object
+     * @throws IOException if the response could not be written
      */
-    private void getMessageByMessageIdHandler(Context ctx) {
+    private void getMessageByMessageIdHandler(Context ctx) throws IOException {
         int message_id = Integer.parseInt(ctx.pathParam("message_id"));
-
-        Message message = messageService.getMessagebyId(message_id);
-        if (message != null) {
-            ctx.status(200).json(message);
-        } else {
-            ctx.status(200);
+        String key = messageKey(message_id);
+        if (writeCachedResponse(ctx, key)) {
+            return;
         }
+
+        long stamp = responseCache.stamp();
+        respond(ctx, () -> messageService.getMessagebyId(message_id), () -> messageService.getMessagebyIdAsync(message_id), message -> {
+            if (message != null) {
+                writeResponse(ctx, responseCache.put(key, stamp, JsonSupport.MESSAGE_WRITER.writeValueAsBytes(message)));
+            } else {
+                ctx.status(200);
+            }
+        });
     }
 
     /**
@@ -166,16 +570,18 @@ public class SocialMediaController {
      * This is because the DELETE verb is intended to be idempotent,
      * ie, multiple calls to the DELETE endpoint should respond with the same type of response.
      * @param ctx The Javalin Context object
+     * @throws IOException if the response could not be written
      */
-    private void deleteMessageByMessageIdHandler(Context ctx) {
+    private void deleteMessageByMessageIdHandler(Context ctx) throws IOException {
         int message_id = Integer.parseInt(ctx.pathParam("message_id"));
-        Message message = messageService.deleteMessageByMessageId(message_id);
 
-        if (message != null) {
-            ctx.status(200).json(message);
-        } else {
-            ctx.status(200);
-        }
+        respond(ctx, () -> messageService.deleteMessageByMessageId(message_id), () -> messageService.deleteMessageByMessageIdAsync(message_id), message -> {
+            if (message != null) {
+                JsonSupport.write(ctx.status(200), JsonSupport.MESSAGE_WRITER, message);
+            } else {
+                ctx.status(200);
+            }
+        });
     }
 
     /**
@@ -194,21 +600,22 @@ public class SocialMediaController {
      * 
      * @param ctx The Javalin Context object
      */
-    private void patchMessageByMessageIdHandler(Context ctx) throws JsonProcessingException  {
+    private void patchMessageByMessageIdHandler(Context ctx) throws IOException {
         // get the message id we want to update
         int message_id = Integer.parseInt(ctx.pathParam("message_id"));
         
         // get the new message we want to use to update the old message
-        Message new_message = objMapper.readValue(ctx.body(), Message.class);
+        Message new_message = JsonSupport.read(ctx, JsonSupport.MESSAGE_READER, JsonSupport.MAX_BODY_BYTES);
        
         // updated message 
-        Message updatedMessage = messageService.updateMessageByMessageId( message_id, new_message);
-        
-        if(updatedMessage == null) {
-            ctx.status(400);
-        } else {
-            ctx.status(200).json(updatedMessage);
-        }   
+        respond(ctx, () -> messageService.updateMessageByMessageId(message_id, new_message),
+                () -> messageService.updateMessageByMessageIdAsync(message_id, new_message), updatedMessage -> {
+            if(updatedMessage == null) {
+                ctx.status(400);
+            } else {
+                JsonSupport.write(ctx.status(200), JsonSupport.MESSAGE_WRITER, updatedMessage);
+            }
+        });
     }
 
     /**
@@ -217,13 +624,209 @@ public class SocialMediaController {
      * which is retrieved from the database. 
      * It is expected for the list to simply be empty if there are no messages.
      * The response status should always be 200, which is the default.
+     * The "after" and "limit" query parameters paginate the list the same way as GET /messages.
+     * The full list is sent with an ETag, and a request whose If-None-Match names it gets an empty 304.
      * 
      * @param ctx The Javalin Context object
+     * @throws IOException if the response could not be written
      */
-    private void getMessagesByAccountIdHandler(Context ctx) {
+    private void getMessagesByAccountIdHandler(Context ctx) throws IOException {
         int account_id = Integer.parseInt(ctx.pathParam("account_id"));
-        List<Message> messages = messageService.getMessagesWrittenByUser(account_id);
 
-        ctx.status(200).json(messages);
+        if (isPageRequest(ctx)) {
+            Integer after = pageAfter(ctx);
+            Integer limit = pageLimit(ctx);
+            if (after == null || limit == null) {
+                ctx.status(400);
+                return;
+            }
+            respond(ctx, () -> messageService.getMessagesWrittenByUserPage(account_id, after, limit),
+                    () -> messageService.getMessagesWrittenByUserPageAsync(account_id, after, limit),
+                    page -> JsonSupport.write(ctx.status(200), JsonSupport.MESSAGE_PAGE_WRITER, page));
+            return;
+        }
+
+        String key = timelineKey(account_id);
+        if (writeCachedResponse(ctx, key)) {
+            return;
+        }
+
+        long stamp = responseCache.stamp();
+        respond(ctx, () -> messageService.getMessagesWrittenByUser(account_id), () -> messageService.getMessagesWrittenByUserAsync(account_id),
+                messages -> writeResponse(ctx, responseCache.put(key, stamp, JsonSupport.MESSAGE_LIST_WRITER.writeValueAsBytes(messages))));
+    }
+
+    /**
+     * @param message_id the message's id
+     * @return the response cache key of GET /messages/{message_id}
+     */
+    private static String messageKey(int message_id) {
+        return "message:" + message_id;
+    }
+
+    /**
+     * @param account_id the account's id
+     * @return the response cache key of GET /accounts/{account_id}/messages
+     */
+    private static String timelineKey(int account_id) {
+        return "timeline:" + account_id;
+    }
+
+    /**
+     * Answer a request from the response cache, without touching the services or the JSON encoder.
+     * @param ctx The Javalin Context object
+     * @param key the response's cache key
+     * @return true if the response was cached and has been written
+     * @throws IOException if the response could not be written
+     */
+    private boolean writeCachedResponse(Context ctx, String key) throws IOException {
+        ResponseCache.CachedResponse cached = responseCache.get(key);
+        if (cached == null) {
+            return false;
+        }
+        writeResponse(ctx, cached);
+        return true;
+    }
+
+    /**
+     * Send an encoded body with its ETag, or an empty 304 if the client's If-None-Match already names it.
+     * @param ctx The Javalin Context object
+     * @param response the body and its ETag
+     * @throws IOException if the response could not be written
+     */
+    private static void writeResponse(Context ctx, ResponseCache.CachedResponse response) throws IOException {
+        ctx.header("ETag", response.etag);
+        if (response.matches(ctx.header("If-None-Match"))) {
+            ctx.status(304);
+            return;
+        }
+        JsonSupport.writeBytes(ctx.status(200), response.body);
+    }
+
+    /**
+     * @param ctx The Javalin Context object
+     * @return true if the request asks for a single page of a message list
+     */
+    private boolean isPageRequest(Context ctx) {
+        return ctx.queryParam("after") != null || ctx.queryParam("limit") != null;
+    }
+
+    /**
+     * @param ctx The Javalin Context object
+     * @return the "after" cursor, 0 if it was not given, or null if it is not a valid cursor
+     */
+    private Integer pageAfter(Context ctx) {
+        Integer after = parseQueryInt(ctx.queryParam("after"), 0);
+        return after == null || after < 0 ? null : after;
+    }
+
+    /**
+     * @param ctx The Javalin Context object
+     * @return the "limit", DEFAULT_PAGE_SIZE if it was not given, or null if it is not a valid limit
+     */
+    private Integer pageLimit(Context ctx) {
+        Integer limit = parseQueryInt(ctx.queryParam("limit"), DEFAULT_PAGE_SIZE);
+        return limit == null || limit < 1 ? null : limit;
+    }
+
+    /**
+     * @param value the raw query parameter, may be null
+     * @param defaultValue the value to use when the parameter is missing
+     * @return the parsed value, or null if it is not a number
+     */
+    private Integer parseQueryInt(String value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the response from the result of a service call. See respond().
+     */
+    private interface Responder<T> {
+        void respond(T value) throws IOException;
+    }
+
+    /**
+     * The request timer and error counter of one route.
+     */
+    private static class RouteMetrics {
+        final Timer timer;
+        final Counter errors;
+
+        RouteMetrics(Timer timer, Counter errors) {
+            this.timer = timer;
+            this.errors = errors;
+        }
+
+        void record(long start, boolean failed) {
+            timer.recordSince(start);
+            if (failed) {
+                errors.increment();
+            }
+        }
+    }
+
+    /**
+     * When an "async" mode request started, and whether its response is written later by a future.
+     */
+    private static class RouteTiming {
+        final RouteMetrics metrics;
+        final long start;
+        volatile boolean completesLater;
+
+        RouteTiming(RouteMetrics metrics, long start) {
+            this.metrics = metrics;
+            this.start = start;
+        }
+    }
+
+    /**
+     * Streams messages into the response as one JSON array. The generator is opened with the first
+     * message, on whichever thread reads the rows, and flushed right after it so the client starts
+     * receiving data at once; finish() closes the array, or writes an empty one if no row came.
+     */
+    private static class MessageArrayWriter implements Consumer<Message> {
+        private final Context ctx;
+        private JsonGenerator generator;
+        private boolean flushed;
+
+        MessageArrayWriter(Context ctx) {
+            this.ctx = ctx;
+        }
+
+        @Override
+        public void accept(Message message) {
+            try {
+                open();
+                // the row writer does not flush; the generator flushes once after the first row
+                JsonSupport.MESSAGE_WRITER.writeValue(generator, message);
+                if (!flushed) {
+                    generator.flush();
+                    flushed = true;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void finish() throws IOException {
+            open();
+            generator.writeEndArray();
+            generator.close();
+        }
+
+        private void open() throws IOException {
+            if (generator == null) {
+                ctx.status(200).contentType(ContentType.APPLICATION_JSON);
+                generator = JsonSupport.MAPPER.getFactory().createGenerator(ctx.outputStream());
+                generator.writeStartArray();
+            }
+        }
     }
-}
\ No newline at end of file
+}
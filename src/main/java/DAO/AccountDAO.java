@@ -1,111 +1,168 @@
 package DAO;
 
 import Model.Account;
-import Util.ConnectionUtil;
-import java.sql.*;
+import Util.MetricsRegistry;
+import Util.Timer;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 
 public class AccountDAO {
 
+    private static final RowMapper<Account> ACCOUNT_MAPPER = new AccountRowMapper();
+    private static final Timer FIND_ACCOUNT_BY_ACCOUNT_ID_TIMER = queryTimer("findAccountByAccount_Id");
+    private static final Timer FIND_ACCOUNTS_BY_ACCOUNT_IDS_TIMER = queryTimer("findAccountsByAccount_Ids");
+    private static final Timer FIND_ACCOUNT_BY_USERNAME_TIMER = queryTimer("findAccountByUsername");
+    private static final Timer INSERT_ACCOUNT_TIMER = queryTimer("insertAccount");
+    private static final Timer UPDATE_PASSWORD_TIMER = queryTimer("updatePassword");
+    private static final Timer COUNT_ACCOUNTS_TIMER = queryTimer("countAccounts");
+    private static final Timer FOR_EACH_USERNAME_TIMER = queryTimer("forEachUsername");
+
+    private final JdbcTemplate jdbc = new JdbcTemplate();
+
     /**
      * Check if a an account_id already exists in the database
-     * 
+     *
      * @param account_id The account_idd to check
      * @return Account if the account_id exists, null otherwise
     */
     public Account findAccountByAccount_Id(int account_id) {
-        // get a connection to the database
-        Connection conn = ConnectionUtil.getConnection();
-        
-        // SQL query to get all accounts with username
-        String sql = "SELECT * FROM account WHERE account_id = ?";
-
+        long start = System.nanoTime();
         try {
-            // Create a prepared statement
-            PreparedStatement ps = conn.prepareStatement(sql);
-            ps.setInt(1, account_id);
+            // SQL query to get the account with account_id
+            String sql = "SELECT " + AccountRowMapper.COLUMNS + " FROM account WHERE account_id = ?";
 
-            // Execute the query
-            ResultSet rs = ps.executeQuery();
+            return jdbc.queryForObject(sql, ps -> ps.setInt(1, account_id), ACCOUNT_MAPPER);
+        } finally {
+            FIND_ACCOUNT_BY_ACCOUNT_ID_TIMER.recordSince(start);
+        }
+    }
 
-            // If the result set has a next value, then the username exists
-            if(rs.next()){
-                String username = rs.getString("username");
-                String password = rs.getString("password");
+    /**
+     * Find every account whose account_id is in the given set, in a single query.
+     * @param account_ids The account_ids to look up
+     * @return the accounts that exist; ids with no account are simply absent
+    */
+    public List<Account> findAccountsByAccount_Ids(Collection<Integer> account_ids) {
+        long start = System.nanoTime();
+        try {
+            // SQL query to get all accounts whose account_id is in an array parameter
+            String sql = "SELECT " + AccountRowMapper.COLUMNS + " FROM account WHERE account_id = ANY(?)";
 
-                return new Account(account_id, username, password);
-            }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            Object[] ids = account_ids.toArray();
+            return jdbc.query(sql, ps -> ps.setArray(1, ps.getConnection().createArrayOf("INTEGER", ids)), ACCOUNT_MAPPER);
+        } finally {
+            FIND_ACCOUNTS_BY_ACCOUNT_IDS_TIMER.recordSince(start);
         }
-        return null;
     }
 
     /**
      * Check if a username already exists in the database
-     * 
+     *
      * @param username The username to check
      * @return Account if the username exists, null otherwise
     */
     public Account findAccountByUsername(String username) {
-        // get a connection to the database
-        Connection conn = ConnectionUtil.getConnection();
-        
-        // SQL query to get all accounts with username
-        String sql = "SELECT * FROM account WHERE username = ?";
-
+        long start = System.nanoTime();
         try {
-            // Create a prepared statement
-            PreparedStatement ps = conn.prepareStatement(sql);
-            ps.setString(1, username);
+            // SQL query to get all accounts with username
+            String sql = "SELECT " + AccountRowMapper.COLUMNS + " FROM account WHERE username = ?";
 
-            // Execute the query
-            ResultSet rs = ps.executeQuery();
-
-            // If the result set has a next value, then the username exists
-            if(rs.next()){
-                int account_id = rs.getInt("account_id");
-                String password = rs.getString("password");
-
-                return new Account(account_id, username, password);
-            }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            return jdbc.queryForObject(sql, ps -> ps.setString(1, username), ACCOUNT_MAPPER);
+        } finally {
+            FIND_ACCOUNT_BY_USERNAME_TIMER.recordSince(start);
         }
-        return null;
     }
-    
+
     /**
      * Insert a new account to the Account table
-     * @param account The account to create
+     * @param account The account to create, whose password is the value to store (a hash)
      * @return The account that was created with account id, or null if the account was not created
     */
     public Account insertAccount(Account account) {
-        // get a connection to the database
-        Connection conn = ConnectionUtil.getConnection();
-        
-        // SQL query to insert a new account
-        String sql = "INSERT INTO account(username, password) VALUES(?, ?);";
+        long start = System.nanoTime();
+        try {
+            // SQL query to insert a new account
+            String sql = "INSERT INTO account(username, password) VALUES(?, ?);";
 
+            Integer generated_account_id = jdbc.insert(sql, ps -> {
+                ps.setString(1, account.getUsername());
+                ps.setString(2, account.getPassword());
+            });
+
+            if (generated_account_id == null) {
+                return null;
+            }
+            return new Account(generated_account_id, account.getUsername(), account.getPassword());
+        } finally {
+            INSERT_ACCOUNT_TIMER.recordSince(start);
+        }
+    }
+
+    /**
+     * @return the number of accounts in the database
+    */
+    public int countAccounts() {
+        long start = System.nanoTime();
         try {
-            // Create a prepared statement
-            PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            // SQL query to count every account
+            String sql = "SELECT COUNT(*) FROM account";
 
-            ps.setString(1, account.getUsername());
-            ps.setString(2, account.getPassword());
+            Integer count = jdbc.queryForObject(sql, StatementBinder.NONE, rs -> rs.getInt(1));
+            return count == null ? 0 : count;
+        } finally {
+            COUNT_ACCOUNTS_TIMER.recordSince(start);
+        }
+    }
 
-            // Execute the query
-            ps.executeUpdate();
+    /**
+     * Hand every username in the database to a consumer, streamed so memory use does not grow with the table.
+     * @param consumer receives each username
+     * @return the number of usernames handed to the consumer
+     * @throws DataAccessException if the query failed, possibly after some usernames were handed over
+    */
+    public int forEachUsername(Consumer<String> consumer) {
+        long start = System.nanoTime();
+        try {
+            // SQL query to read only the username column of every account
+            String sql = "SELECT username FROM account";
 
-            ResultSet pkeyResultSet = ps.getGeneratedKeys();
+            return jdbc.queryForEach(sql, StatementBinder.NONE, rs -> rs.getString(1), consumer);
+        } finally {
+            FOR_EACH_USERNAME_TIMER.recordSince(start);
+        }
+    }
 
-            if(pkeyResultSet.next()){
-                int generated_account_id = (int) pkeyResultSet.getLong(1);
-              
-                return new Account(generated_account_id, account.getUsername(), account.getPassword());
-            }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());         
+    /**
+     * Replace the stored password of an account, but only if it still holds the expected value,
+     * so two concurrent upgrades of the same account cannot overwrite each other.
+     * @param account_id The account to update
+     * @param expectedPassword The stored value the caller read
+     * @param newPassword The value to store
+     * @return true if the password was replaced
+    */
+    public boolean updatePassword(int account_id, String expectedPassword, String newPassword) {
+        long start = System.nanoTime();
+        try {
+            // SQL query to swap the stored password of an account if nobody changed it meanwhile
+            String sql = "UPDATE account SET password = ? WHERE account_id = ? AND password = ?;";
+
+            return jdbc.update(sql, ps -> {
+                ps.setString(1, newPassword);
+                ps.setInt(2, account_id);
+                ps.setString(3, expectedPassword);
+            }) == 1;
+        } finally {
+            UPDATE_PASSWORD_TIMER.recordSince(start);
         }
-        return null;
+    }
+
+    /**
+     * @param method the DAO method being timed
+     * @return the db_query_seconds timer for that method
+    */
+    private static Timer queryTimer(String method) {
+        return MetricsRegistry.DEFAULT.timer("db_query_seconds", "Time spent in each DAO method, including borrowing the connection",
+                "dao", "AccountDAO", "method", method);
     }
 }
@@ -0,0 +1,22 @@
+package DAO;
+
+import Model.Account;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps a row of the account table to an Account.
+ * The row must have been selected with COLUMNS as its projection, since columns are read by position.
+ */
+public class AccountRowMapper implements RowMapper<Account> {
+
+    /**
+     * The select list every account query uses, in the order mapRow() reads it.
+     */
+    public static final String COLUMNS = "account_id, username, password";
+
+    @Override
+    public Account mapRow(ResultSet rs) throws SQLException {
+        return new Account(rs.getInt(1), rs.getString(2), rs.getString(3));
+    }
+}
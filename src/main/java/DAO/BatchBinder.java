@@ -0,0 +1,19 @@
+package DAO;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Sets the parameters of a PreparedStatement for one item of a JDBC batch.
+ * @param <T> the type of the items in the batch
+ */
+@FunctionalInterface
+public interface BatchBinder<T> {
+
+    /**
+     * @param ps the statement whose "?" placeholders should be filled in
+     * @param item the batch item to take the values from
+     * @throws SQLException if a parameter can not be set
+     */
+    void bind(PreparedStatement ps, T item) throws SQLException;
+}
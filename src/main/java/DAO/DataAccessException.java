@@ -0,0 +1,20 @@
+package DAO;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown by JdbcTemplate when a query could not be run, for example because no pooled connection
+ * became available or the database rejected the statement.
+ *
+ * Unlike an empty result, it means nothing is known about the rows asked for, so callers must not
+ * treat it as "not found" or cache anything for it. The controller answers it with a 500.
+ */
+public class DataAccessException extends RuntimeException {
+
+    /**
+     * @param cause the SQLException the query failed with
+     */
+    public DataAccessException(SQLException cause) {
+        super(cause.getMessage(), cause);
+    }
+}
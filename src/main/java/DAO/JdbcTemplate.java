@@ -0,0 +1,203 @@
+package DAO;
+
+import Util.ConnectionUtil;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Shared execution layer for the DAO classes.
+ * Every method borrows a connection from ConnectionUtil, runs one statement, and closes the
+ * ResultSet, PreparedStatement and Connection before returning, so DAO methods never
+ * handle JDBC resources themselves.
+ *
+ * Errors from writes follow the DAO convention: the SQLException message is printed and a
+ * neutral value (null or 0) is returned to the caller. Queries throw a DataAccessException
+ * instead, so a failed query is never mistaken for a missing row, an empty result or the end of
+ * a result.
+ */
+public class JdbcTemplate {
+
+    /**
+     * Run a query and map its first row.
+     * @param sql the query to run
+     * @param binder sets the query parameters
+     * @param mapper converts the row into an object
+     * @return the mapped first row, or null if the query returned no rows
+     * @throws DataAccessException if the query failed
+    */
+    public <T> T queryForObject(String sql, StatementBinder binder, RowMapper<T> mapper) {
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            binder.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? mapper.mapRow(rs) : null;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    /**
+     * Run a query and map every row.
+     * @param sql the query to run
+     * @param binder sets the query parameters
+     * @param mapper converts each row into an object
+     * @return the mapped rows in result order, empty if there were none
+     * @throws DataAccessException if the query failed
+    */
+    public <T> List<T> query(String sql, StatementBinder binder, RowMapper<T> mapper) {
+        List<T> results = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            binder.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    results.add(mapper.mapRow(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+        return results;
+    }
+
+    /**
+     * Run a query and hand each mapped row to a consumer as soon as it is read, without collecting them.
+     * The H2 session is switched to lazy query execution for the duration of the query, so rows are
+     * produced one at a time instead of the whole result being built first; memory use is constant
+     * whatever the size of the result.
+     * Runtime exceptions thrown by the consumer stop the query and are passed on to the caller.
+     * @param sql the query to run
+     * @param binder sets the query parameters
+     * @param mapper converts each row into an object
+     * @param consumer receives each mapped row in result order
+     * @return the number of rows handed to the consumer
+     * @throws DataAccessException if the query failed, possibly after some rows were handed over
+    */
+    public <T> int queryForEach(String sql, StatementBinder binder, RowMapper<T> mapper, Consumer<T> consumer) {
+        int rows = 0;
+        try (Connection conn = getConnection()) {
+            setLazyQueryExecution(conn, true);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                binder.bind(ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        consumer.accept(mapper.mapRow(rs));
+                        rows++;
+                    }
+                }
+            } finally {
+                setLazyQueryExecution(conn, false);
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+        return rows;
+    }
+
+    /**
+     * Run an INSERT, UPDATE or DELETE statement.
+     * @param sql the statement to run
+     * @param binder sets the statement parameters
+     * @return the number of rows affected, or 0 if the statement failed
+    */
+    public int update(String sql, StatementBinder binder) {
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            binder.bind(ps);
+            return ps.executeUpdate();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return 0;
+    }
+
+    /**
+     * Run an INSERT statement and read back the key the database generated for the new row.
+     * @param sql the INSERT statement to run
+     * @param binder sets the statement parameters
+     * @return the generated key, or null if no row was inserted
+    */
+    public Integer insert(String sql, StatementBinder binder) {
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            binder.bind(ps);
+            ps.executeUpdate();
+            try (ResultSet pkeyResultSet = ps.getGeneratedKeys()) {
+                if (pkeyResultSet.next()) {
+                    return (int) pkeyResultSet.getLong(1);
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Insert many rows with a single JDBC batch inside one transaction, and read back their generated keys.
+     * Either every row is inserted or, if any of them fails, none are.
+     * @param sql the INSERT statement to run for each item
+     * @param items the items to insert
+     * @param binder sets the statement parameters from one item
+     * @return the generated keys in the same order as items, or null if the batch failed and was rolled back
+    */
+    public <T> List<Integer> insertBatch(String sql, List<T> items, BatchBinder<T> binder) {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (T item : items) {
+                    binder.bind(ps, item);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                List<Integer> keys = new ArrayList<>(items.size());
+                try (ResultSet pkeyResultSet = ps.getGeneratedKeys()) {
+                    while (pkeyResultSet.next()) {
+                        keys.add((int) pkeyResultSet.getLong(1));
+                    }
+                }
+                if (keys.size() != items.size()) {
+                    throw new SQLException("Expected " + items.size() + " generated keys but got " + keys.size());
+                }
+                conn.commit();
+                return keys;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Turn H2's lazy query execution on or off for the session behind a connection.
+     * @param conn the connection whose session to change
+     * @param lazy true to stream query results row by row
+     * @throws SQLException if the setting could not be changed
+    */
+    private void setLazyQueryExecution(Connection conn, boolean lazy) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("SET LAZY_QUERY_EXECUTION " + lazy);
+        }
+    }
+
+    /**
+     * @return a pooled connection
+     * @throws SQLException if the pool could not provide one
+    */
+    private Connection getConnection() throws SQLException {
+        Connection conn = ConnectionUtil.getConnection();
+        if (conn == null) {
+            throw new SQLException("No database connection available");
+        }
+        return conn;
+    }
+}
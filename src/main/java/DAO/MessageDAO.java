@@ -1,126 +1,143 @@
 package DAO;
 
 import Model.Message;
-import Util.ConnectionUtil;
-import java.sql.*;
+import Util.MetricsRegistry;
+import Util.Timer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class MessageDAO {
 
+    private static final RowMapper<Message> MESSAGE_MAPPER = new MessageRowMapper();
+    private static final Timer FIND_ALL_MESSAGES_TIMER = queryTimer("findAllMessages");
+    private static final Timer STREAM_ALL_MESSAGES_TIMER = queryTimer("streamAllMessages");
+    private static final Timer FIND_ALL_MESSAGES_WRITTEN_BY_USER_TIMER = queryTimer("findAllMessagesWrittenByUser");
+    private static final Timer FIND_MESSAGES_AFTER_TIMER = queryTimer("findMessagesAfter");
+    private static final Timer FIND_MESSAGES_WRITTEN_BY_USER_AFTER_TIMER = queryTimer("findMessagesWrittenByUserAfter");
+    private static final Timer FIND_MESSAGE_BY_MESSAGE_ID_TIMER = queryTimer("findMessageByMessageId");
+    private static final Timer INSERT_MESSAGE_TIMER = queryTimer("insertMessage");
+    private static final Timer INSERT_MESSAGES_TIMER = queryTimer("insertMessages");
+    private static final Timer DELETE_MESSAGE_TIMER = queryTimer("deleteMessage");
+    private static final Timer UPDATE_MESSAGE_TEXT_TIMER = queryTimer("updateMessageText");
+
+    private final JdbcTemplate jdbc = new JdbcTemplate();
+
     /**
      * Get all messages from the message database
      * @return List of all messages in the database
     */
     public List<Message> findAllMessages() {
-        List<Message> messages = new ArrayList<Message>();
-        
-        // get a connection to the database
-        Connection conn = ConnectionUtil.getConnection();
-        
-        // SQL query to get all messages
-        String sql = "SELECT * FROM message;";
+        long start = System.nanoTime();
+        try {
+            // SQL query to get all messages
+            String sql = "SELECT " + MessageRowMapper.COLUMNS + " FROM message;";
+
+            return jdbc.query(sql, StatementBinder.NONE, MESSAGE_MAPPER);
+        } finally {
+            FIND_ALL_MESSAGES_TIMER.recordSince(start);
+        }
+    }
 
+    /**
+     * Read every message in the database, handing each one to the consumer as it comes off the ResultSet.
+     * Unlike findAllMessages() the table is never held in memory.
+     * @param consumer receives each message in message_id order
+     * @return the number of messages read
+     * @throws DataAccessException if the query failed, possibly after some messages were handed over
+    */
+    public int streamAllMessages(Consumer<Message> consumer) {
+        long start = System.nanoTime();
         try {
-            // Create a prepared statement
-            PreparedStatement ps = conn.prepareStatement(sql);
-
-            // Execute the query
-            ResultSet rs = ps.executeQuery();
-
-            // Iterate through the result set
-            while (rs.next()) {
-                Message message = new Message();
-                message.setMessage_id(rs.getInt("message_id"));
-                message.setMessage_text(rs.getString("message_text"));
-                message.setPosted_by(rs.getInt("posted_by"));
-                message.setTime_posted_epoch(rs.getLong("time_posted_epoch"));
-                messages.add(message);
-            }
+            // SQL query to get all messages
+            String sql = "SELECT " + MessageRowMapper.COLUMNS + " FROM message ORDER BY message_id;";
 
-            return messages;
-        
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            return jdbc.queryForEach(sql, StatementBinder.NONE, MESSAGE_MAPPER, consumer);
+        } finally {
+            STREAM_ALL_MESSAGES_TIMER.recordSince(start);
         }
-        return null;
-    } 
+    }
 
     /**
      * Retrieve all messages written by a particular user (account_id)
-     * @return List of all messages in the database written by posted_by
+     * @return List of all messages in the database written by posted_by, ordered by message_id
+     * @throws DataAccessException if the query failed, which says nothing about the user's messages
     */
-    public List<Message> findAllMessagesWrittenByUser(int posted_by) {  
-        List<Message> messages = new ArrayList<Message>();
-        
-        // get a connection to the database
-        Connection conn = ConnectionUtil.getConnection();
-        
-        // SQL query to get all messages
-        String sql = "SELECT * FROM message Where posted_by = ?;";
+    public List<Message> findAllMessagesWrittenByUser(int posted_by) {
+        long start = System.nanoTime();
+        try {
+            // SQL query to get all messages
+            String sql = "SELECT " + MessageRowMapper.COLUMNS + " FROM message WHERE posted_by = ? ORDER BY message_id;";
+
+            return jdbc.query(sql, ps -> ps.setInt(1, posted_by), MESSAGE_MAPPER);
+        } finally {
+            FIND_ALL_MESSAGES_WRITTEN_BY_USER_TIMER.recordSince(start);
+        }
+    }
 
-        Message message = null;
+    /**
+     * Get one page of messages ordered by message_id, starting after a cursor (keyset pagination).
+     * The primary key index lets the database seek straight to the cursor, so every page costs
+     * the same no matter how deep into the table it is.
+     * @param after only messages with a message_id greater than this are returned
+     * @param limit the maximum number of messages to return
+     * @return List of at most limit messages
+    */
+    public List<Message> findMessagesAfter(int after, int limit) {
+        long start = System.nanoTime();
+        try {
+            // SQL query to get the next page of messages
+            String sql = "SELECT " + MessageRowMapper.COLUMNS + " FROM message WHERE message_id > ? ORDER BY message_id LIMIT ?;";
+
+            return jdbc.query(sql, ps -> {
+                ps.setInt(1, after);
+                ps.setInt(2, limit);
+            }, MESSAGE_MAPPER);
+        } finally {
+            FIND_MESSAGES_AFTER_TIMER.recordSince(start);
+        }
+    }
 
+    /**
+     * Get one page of the messages written by a user, ordered by message_id, starting after a cursor.
+     * @param posted_by the account_id of the author
+     * @param after only messages with a message_id greater than this are returned
+     * @param limit the maximum number of messages to return
+     * @return List of at most limit messages written by posted_by
+    */
+    public List<Message> findMessagesWrittenByUserAfter(int posted_by, int after, int limit) {
+        long start = System.nanoTime();
         try {
-            // Create a prepared statement
-            PreparedStatement ps = conn.prepareStatement(sql);
-            ps.setInt(1, posted_by);
-
-            // Execute the query
-            ResultSet rs = ps.executeQuery();
-
-            // Iterate through the result set
-            while (rs.next()) {
-                message = new Message();
-                message.setMessage_id(rs.getInt("message_id"));
-                message.setMessage_text(rs.getString("message_text"));
-                message.setPosted_by(posted_by);
-                message.setTime_posted_epoch(rs.getLong("time_posted_epoch"));
-                messages.add(message);
-            }
-                   
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            // SQL query to get the next page of a user's messages
+            String sql = "SELECT " + MessageRowMapper.COLUMNS + " FROM message WHERE posted_by = ? AND message_id > ? ORDER BY message_id LIMIT ?;";
+
+            return jdbc.query(sql, ps -> {
+                ps.setInt(1, posted_by);
+                ps.setInt(2, after);
+                ps.setInt(3, limit);
+            }, MESSAGE_MAPPER);
+        } finally {
+            FIND_MESSAGES_WRITTEN_BY_USER_AFTER_TIMER.recordSince(start);
         }
-        return messages;
-    } 
+    }
 
     /**
      * Find a message in the database by message_id
      * @param message_id The message_id to search for in the database
      * @return The message object that was found in the database
      *         or null if no message was found
+     * @throws DataAccessException if the query failed, which says nothing about whether the message exists
      */
     public Message findMessageByMessageId(int message_id) {
-        // get a connection to the database
-        Connection conn = ConnectionUtil.getConnection();
-        
-        // SQL query to get all messages with message_id
-        String sql = "SELECT * FROM message WHERE message_id = ?;";
-
-        Message message = null;
-
+        long start = System.nanoTime();
         try {
-            // Create a prepared statement
-            PreparedStatement ps = conn.prepareStatement(sql);
-            ps.setInt(1, message_id);
-
-            // Execute the query
-            ResultSet rs = ps.executeQuery();
-
-            // Iterate through the result set
-            if (rs.next()) {
-                message = new Message();
-                message.setMessage_id(rs.getInt("message_id"));
-                message.setMessage_text(rs.getString("message_text"));
-                message.setPosted_by(rs.getInt("posted_by"));
-                message.setTime_posted_epoch(rs.getLong("time_posted_epoch"));
-            }        
-        
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            // SQL query to get all messages with message_id
+            String sql = "SELECT " + MessageRowMapper.COLUMNS + " FROM message WHERE message_id = ?;";
+
+            return jdbc.queryForObject(sql, ps -> ps.setInt(1, message_id), MESSAGE_MAPPER);
+        } finally {
+            FIND_MESSAGE_BY_MESSAGE_ID_TIMER.recordSince(start);
         }
-        return message;
     }
 
     /**
@@ -130,86 +147,105 @@ public class MessageDAO {
      *         or null if the message was not added.
     */
     public Message insertMessage(Message message) {
-        // get a connection to the database
-        Connection conn = ConnectionUtil.getConnection();
-        
-        // SQL query to insert a new message
-        String sql = "INSERT INTO message(posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?);";
+        long start = System.nanoTime();
+        try {
+            // SQL query to insert a new message
+            String sql = "INSERT INTO message(posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?);";
+
+            Integer generated_message_id = jdbc.insert(sql, ps -> {
+                ps.setInt(1, message.getPosted_by());
+                ps.setString(2, message.getMessage_text());
+                ps.setLong(3, message.getTime_posted_epoch());
+            });
+
+            if (generated_message_id == null) {
+                return null;
+            }
+            return new Message(generated_message_id, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
+        } finally {
+            INSERT_MESSAGE_TIMER.recordSince(start);
+        }
+    }
 
+    /**
+     * Insert many messages in one JDBC batch and one transaction.
+     * @param messages The messages to create
+     * @return The messages with their generated message_id, in the same order,
+     *         or null if the batch failed and nothing was added.
+    */
+    public List<Message> insertMessages(List<Message> messages) {
+        long start = System.nanoTime();
         try {
-            // Create a prepared statement
-            PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-           
-            ps.setInt(1, message.getPosted_by());
-            ps.setString(2, message.getMessage_text());
-            ps.setLong(3, message.getTime_posted_epoch());
-
-            // Execute the query
-            ps.executeUpdate();
-
-            ResultSet pkeyResultSet = ps.getGeneratedKeys();
-            if(pkeyResultSet.next()){
-                int generated_message_id = (int) pkeyResultSet.getLong(1);
-                return new Message(generated_message_id, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
+            // SQL query to insert a new message
+            String sql = "INSERT INTO message(posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?);";
+
+            List<Integer> generated_message_ids = jdbc.insertBatch(sql, messages, (ps, message) -> {
+                ps.setInt(1, message.getPosted_by());
+                ps.setString(2, message.getMessage_text());
+                ps.setLong(3, message.getTime_posted_epoch());
+            });
+
+            if (generated_message_ids == null) {
+                return null;
             }
-        
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            List<Message> inserted = new ArrayList<>(messages.size());
+            for (int i = 0; i < messages.size(); i++) {
+                Message message = messages.get(i);
+                inserted.add(new Message(generated_message_ids.get(i), message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch()));
+            }
+            return inserted;
+        } finally {
+            INSERT_MESSAGES_TIMER.recordSince(start);
         }
-        return null;
     }
 
     /**
-     * Delete a message in the message database by message_id
+     * Delete a message in the message database by message_id and return the row that was deleted.
+     * The delete and the read happen in one statement, so the returned row is exactly the one removed
+     * even if another writer changes it concurrently.
      * @param message_id The message_id to search for in the database
+     * @return The message that was deleted, or null if no message had that message_id
     */
-    public void deleteMessage(int message_id) {
-        // get a connection to the database
-        Connection conn = ConnectionUtil.getConnection();
-        
-        // SQL query to delete a message with message_id
-        String sql = "DELETE FROM message WHERE message_id = ?;";
-
+    public Message deleteMessage(int message_id) {
+        long start = System.nanoTime();
         try {
-            // Create a prepared statement
-            PreparedStatement ps = conn.prepareStatement(sql);
-            ps.setInt(1, message_id);
-
-            // Execute the query
-            ps.executeUpdate();
-        
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            // SQL query to delete a message with message_id, reading the deleted row from H2's OLD TABLE delta table
+            String sql = "SELECT " + MessageRowMapper.COLUMNS + " FROM OLD TABLE (DELETE FROM message WHERE message_id = ?);";
+
+            return jdbc.queryForObject(sql, ps -> ps.setInt(1, message_id), MESSAGE_MAPPER);
+        } finally {
+            DELETE_MESSAGE_TIMER.recordSince(start);
         }
     }
 
     /**
-     * Update the message_text of the given message_id
+     * Update the message_text of the given message_id and return the updated row.
+     * The update and the read happen in one statement.
      * @param message_id The message_id of the message we want to update
      * @param new message text to replace the old text message
-     * @return true if message updated succefully, false otherwise
+     * @return the message as it is after the update, or null if no message had that message_id
     */
-    public Boolean updateMessageText(int message_id, String newMessageText) {
-        // get a connection to the database
-        Connection conn = ConnectionUtil.getConnection();
-
-        // SQL query to update a message_id with the new message text
-        String sql = "UPDATE message SET message_text = ? WHERE message_id = ?;";
-
+    public Message updateMessageText(int message_id, String newMessageText) {
+        long start = System.nanoTime();
         try {
-            // Create a prepared statement
-            PreparedStatement ps = conn.prepareStatement(sql);
-            ps.setString(1, newMessageText);
-            ps.setInt(2, message_id);
-            int rowsUpdated = ps.executeUpdate();
-            
-            if(rowsUpdated > 0) {
-                return true;
-            }
-
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            // SQL query to update a message_id with the new message text, reading the result from H2's FINAL TABLE delta table
+            String sql = "SELECT " + MessageRowMapper.COLUMNS + " FROM FINAL TABLE (UPDATE message SET message_text = ? WHERE message_id = ?);";
+
+            return jdbc.queryForObject(sql, ps -> {
+                ps.setString(1, newMessageText);
+                ps.setInt(2, message_id);
+            }, MESSAGE_MAPPER);
+        } finally {
+            UPDATE_MESSAGE_TEXT_TIMER.recordSince(start);
         }
-        return false;
+    }
+
+    /**
+     * @param method the DAO method being timed
+     * @return the db_query_seconds timer for that method
+    */
+    private static Timer queryTimer(String method) {
+        return MetricsRegistry.DEFAULT.timer("db_query_seconds", "Time spent in each DAO method, including borrowing the connection",
+                "dao", "MessageDAO", "method", method);
     }
 }
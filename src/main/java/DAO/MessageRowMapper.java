@@ -0,0 +1,23 @@
+package DAO;
+
+import Model.Message;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps a row of the message table to a Message.
+ * The row must have been selected with COLUMNS as its projection: columns are read by position,
+ * which skips the per-column name lookup that reading them by label costs on every row.
+ */
+public class MessageRowMapper implements RowMapper<Message> {
+
+    /**
+     * The select list every message query uses, in the order mapRow() reads it.
+     */
+    public static final String COLUMNS = "message_id, posted_by, message_text, time_posted_epoch";
+
+    @Override
+    public Message mapRow(ResultSet rs) throws SQLException {
+        return new Message(rs.getInt(1), rs.getInt(2), rs.getString(3), rs.getLong(4));
+    }
+}
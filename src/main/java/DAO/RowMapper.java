@@ -0,0 +1,20 @@
+package DAO;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Converts the current row of a ResultSet into an object.
+ * Implementations must not call next() or close the ResultSet; JdbcTemplate owns both.
+ * @param <T> the type each row is mapped to
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * @param rs the ResultSet, already positioned on the row to map
+     * @return the object built from the row
+     * @throws SQLException if a column can not be read
+     */
+    T mapRow(ResultSet rs) throws SQLException;
+}
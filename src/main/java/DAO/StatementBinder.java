@@ -0,0 +1,22 @@
+package DAO;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Sets the parameters of a PreparedStatement before JdbcTemplate executes it.
+ */
+@FunctionalInterface
+public interface StatementBinder {
+
+    /**
+     * A binder for statements without parameters.
+     */
+    StatementBinder NONE = ps -> { };
+
+    /**
+     * @param ps the statement whose "?" placeholders should be filled in
+     * @throws SQLException if a parameter can not be set
+     */
+    void bind(PreparedStatement ps) throws SQLException;
+}
@@ -0,0 +1,84 @@
+package Model;
+
+/**
+ * This is a class that models the outcome of one message in a POST /messages/batch request.
+ */
+public class MessageBatchResult {
+    /**
+     * The position of the message in the request array.
+     */
+    public int index;
+    /**
+     * The HTTP-style status of this message: 200 if it was created, 400 if it was rejected,
+     * 500 if it was valid but could not be stored.
+     */
+    public int status;
+    /**
+     * The created message, including its generated message_id, or null if it was not created.
+     */
+    public Message message;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public MessageBatchResult() {
+    }
+    /**
+     * @param index
+     * @param status
+     * @param message
+     */
+    public MessageBatchResult(int index, int status, Message message) {
+        this.index = index;
+        this.status = status;
+        this.message = message;
+    }
+    /**
+     * @return index
+     */
+    public int getIndex() {
+        return index;
+    }
+    /**
+     * @param index
+     */
+    public void setIndex(int index) {
+        this.index = index;
+    }
+    /**
+     * @return status
+     */
+    public int getStatus() {
+        return status;
+    }
+    /**
+     * @param status
+     */
+    public void setStatus(int status) {
+        this.status = status;
+    }
+    /**
+     * @return message
+     */
+    public Message getMessage() {
+        return message;
+    }
+    /**
+     * @param message
+     */
+    public void setMessage(Message message) {
+        this.message = message;
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "MessageBatchResult{" +
+                "index=" + index +
+                ", status=" + status +
+                ", message=" + message +
+                '}';
+    }
+}
@@ -0,0 +1,66 @@
+package Model;
+
+import java.util.List;
+
+/**
+ * This is a class that models one page of messages returned by a paginated list endpoint.
+ */
+public class MessagePage {
+    /**
+     * The messages on this page, ordered by message_id.
+     */
+    public List<Message> messages;
+    /**
+     * The message_id to pass as "after" to get the next page, or null if this is the last page.
+     */
+    public Integer next_cursor;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public MessagePage() {
+    }
+    /**
+     * @param messages
+     * @param next_cursor
+     */
+    public MessagePage(List<Message> messages, Integer next_cursor) {
+        this.messages = messages;
+        this.next_cursor = next_cursor;
+    }
+    /**
+     * @return messages
+     */
+    public List<Message> getMessages() {
+        return messages;
+    }
+    /**
+     * @param messages
+     */
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+    /**
+     * @return next_cursor
+     */
+    public Integer getNext_cursor() {
+        return next_cursor;
+    }
+    /**
+     * @param next_cursor
+     */
+    public void setNext_cursor(Integer next_cursor) {
+        this.next_cursor = next_cursor;
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "MessagePage{" +
+                "messages=" + messages +
+                ", next_cursor=" + next_cursor +
+                '}';
+    }
+}
@@ -2,16 +2,81 @@ package Service;
 
 import Model.Account;
 import DAO.AccountDAO;
+import DAO.DataAccessException;
+import Util.CacheStats;
+import Util.BloomFilter;
+import Util.Counter;
+import Util.LruCache;
+import Util.MetricsRegistry;
+import Util.PasswordHasher;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class AccountService {
 
+    /**
+     * Most accounts kept in the account cache; override with -Dcache.accounts.maxSize.
+    */
+    private static final int ACCOUNT_CACHE_SIZE = Integer.getInteger("cache.accounts.maxSize", 10_000);
+
+    /**
+     * The username filter is sized for at least this many accounts, or twice the accounts in the
+     * database at startup if that is more; override with -Daccounts.usernameFilter.minCapacity.
+    */
+    private static final int USERNAME_FILTER_MIN_CAPACITY = Integer.getInteger("accounts.usernameFilter.minCapacity", 100_000);
+
+    /**
+     * False positive rate the username filter is sized for; override with -Daccounts.usernameFilter.falsePositiveRate.
+    */
+    private static final double USERNAME_FILTER_FALSE_POSITIVE_RATE =
+            Double.parseDouble(System.getProperty("accounts.usernameFilter.falsePositiveRate", "0.01"));
+
+    private static final Counter USERNAME_LOOKUPS_SKIPPED = MetricsRegistry.DEFAULT.counter("account_username_lookups_skipped_total",
+            "Register and login username lookups answered by the username filter without a query");
+
     private AccountDAO accountDAO;
 
+    /**
+     * Every username in the account table, so a register or login for a username that definitely
+     * does not exist skips the database. Warmed when the service is created and updated on every
+     * insert; this assumes accounts are only added through this service. The unique constraint on
+     * account.username stays the source of truth when two registrations race. Null when turned off
+     * with -Daccounts.usernameFilter.enabled=false, or when the usernames could not be read at startup.
+    */
+    private final BloomFilter usernames;
+
+    /**
+     * Hashes new passwords and checks login attempts against stored hashes.
+    */
+    private final PasswordHasher passwordHasher;
+
+    /**
+     * Password hashing is deliberately slow, so it runs on its own bounded executor rather than
+     * on request or DB threads; when that executor is saturated, register and login are shed.
+    */
+    private final BoundedExecutor hashingExecutor;
+
+    /**
+     * Logins verified within the last few seconds, so a repeated login skips the hash.
+    */
+    private final VerifiedCredentialCache verifiedCredentials;
+
+    /**
+     * Accounts by account_id, so checking that a posted_by exists does not need a database round trip.
+     * Filled on register, login and lookup misses.
+    */
+    private final LruCache<Integer, Account> accountCache = new LruCache<>(ACCOUNT_CACHE_SIZE);
+
     /**
      * No argument constructor to create a new AccountService with a new AccountDAO object.
     */
     public AccountService() {
-        this.accountDAO = new AccountDAO();
+        this(new AccountDAO());
     }
 
     /**
@@ -19,7 +84,21 @@ public class AccountService {
      * @param accountDAO The AccountDAO object to be used by the AccountService
     */
     public AccountService(AccountDAO accountDAO) {
+        this(accountDAO, PasswordHasher.fromSystemProperties());
+    }
+
+    /**
+     * Constructor for a AccountService given an exesting AccountDAO and password hasher
+     * @param accountDAO The AccountDAO object to be used by the AccountService
+     * @param passwordHasher The hasher, and so the hashing cost, to store passwords with
+    */
+    public AccountService(AccountDAO accountDAO, PasswordHasher passwordHasher) {
         this.accountDAO = accountDAO;
+        this.passwordHasher = passwordHasher;
+        this.hashingExecutor = PasswordHashingExecutor.shared();
+        this.verifiedCredentials = VerifiedCredentialCache.fromSystemProperties();
+        this.usernames = Boolean.parseBoolean(System.getProperty("accounts.usernameFilter.enabled", "true"))
+                ? loadUsernameFilter(accountDAO) : null;
     }
     
     /**
@@ -29,48 +108,306 @@ public class AccountService {
      *  2. password is at least 4 characters long
      *  3. an Account with that username does not already exist
      * 
+     * Only a hash of the password is stored; the returned account carries the password as given.
      * @param account The account to create
      * @return The account that was created, or null if the account was not created
+     * @throws java.util.concurrent.RejectedExecutionException if the hashing executor is saturated
     */
     public Account createNewAccount(Account account) {
-        String u_name = account.getUsername();
-        String p_word = account.getPassword();
-        int p_wordLength = p_word.strip().length();
-        Account existing_account = accountDAO.findAccountByUsername(u_name);
-        
-        if (u_name.isBlank() || p_wordLength < 4 || existing_account != null) {
+        if (!isValidNewAccount(account)) {
+            return null;
+        }
+        if (mightExist(account.getUsername()) && accountDAO.findAccountByUsername(account.getUsername()) != null) {
             return null;
         }
 
-        return accountDAO.insertAccount(account);
+        String hash = await(hashPassword(account.getPassword()));
+        return registered(account.getUsername(), hash, account.getPassword());
     }
 
     /**
-     * Find an account in the database by username
+     * Find an account in the database by username and check the password against its stored hash.
+     * Accounts still holding a plaintext password, or a hash of a different cost, are re-hashed
+     * in the background after a successful login.
      * @param account The account to verify if it exists in database  
-     * @return The existing account, or null if no account is found
+     * @return The existing account, or null if no account is found or the password is wrong
+     * @throws java.util.concurrent.RejectedExecutionException if the hashing executor is saturated
     */
     public Account getAccountByUsername(Account account) {
+        if (!mightExist(account.getUsername())) {
+            return null;
+        }
         Account existignAccount = accountDAO.findAccountByUsername(account.getUsername());
-        if (existignAccount == null || !existignAccount.getPassword().equals(account.getPassword())) {
+        if (existignAccount == null) {
             return null;
         }
 
-        return existignAccount;
+        boolean verified = await(verifyPassword(existignAccount, account.getPassword()));
+        return loggedIn(existignAccount, account.getPassword(), verified);
     }
 
     /**
-     * Find an account in the database by account_id
+     * Find an account by account_id, from the account cache when possible.
+     * Only accounts that exist are cached, so an id that is registered later is never reported missing.
      * @param account_id The account_id to verify if it exists in database  
      * @return The existing account, or null if no account is found
     */
     public Account getAccountByAccoutId(int account_id) {
+        Account cachedAccount = accountCache.get(account_id);
+        if (cachedAccount != null) {
+            return cachedAccount;
+        }
+
         Account existignAccount = accountDAO.findAccountByAccount_Id(account_id);
         if (existignAccount == null){
             return null;
         }
 
+        accountCache.put(account_id, existignAccount);
         return existignAccount;
     }
+
+    /**
+     * Find which of the given account_ids exist. Cached accounts are answered from the cache and
+     * all the others are looked up together in a single query.
+     * @param account_ids The account_ids to check
+     * @return the subset of account_ids that belong to an existing account
+    */
+    public Set<Integer> getExistingAccountIds(Collection<Integer> account_ids) {
+        Set<Integer> existing = new HashSet<>();
+        List<Integer> uncached = new ArrayList<>();
+        for (Integer account_id : account_ids) {
+            if (accountCache.get(account_id) != null) {
+                existing.add(account_id);
+            } else {
+                uncached.add(account_id);
+            }
+        }
+
+        if (!uncached.isEmpty()) {
+            for (Account account : accountDAO.findAccountsByAccount_Ids(uncached)) {
+                accountCache.put(account.getAccount_id(), account);
+                existing.add(account.getAccount_id());
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * createNewAccount() without blocking the caller. The lookup and insert run on the shared
+     * DbExecutor and the hash on the hashing executor, so a DB thread never waits on a hash.
+     * @param account The account to create
+     * @return a future completed with the created account or null, or failed with a
+     *         RejectedExecutionException if an executor is saturated
+    */
+    public CompletableFuture<Account> createNewAccountAsync(Account account) {
+        if (!isValidNewAccount(account)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String username = account.getUsername();
+        String password = account.getPassword();
+        CompletableFuture<Account> existing = mightExist(username)
+                ? DbExecutor.shared().supply(() -> accountDAO.findAccountByUsername(username))
+                : CompletableFuture.completedFuture(null);
+        return existing.thenCompose(existingAccount -> existingAccount != null
+                ? CompletableFuture.completedFuture(null)
+                : hashPassword(password).thenCompose(hash -> DbExecutor.shared().supply(() ->
+                        registered(username, hash, password))));
+    }
+
+    /**
+     * getAccountByUsername() without blocking the caller. The lookup runs on the shared
+     * DbExecutor and the password check on the hashing executor.
+     * @param account The account to verify if it exists in database
+     * @return a future completed with the existing account or null, or failed with a
+     *         RejectedExecutionException if an executor is saturated
+    */
+    public CompletableFuture<Account> getAccountByUsernameAsync(Account account) {
+        if (!mightExist(account.getUsername())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String password = account.getPassword();
+        return DbExecutor.shared().supply(() -> accountDAO.findAccountByUsername(account.getUsername()))
+                .thenCompose(existing -> existing == null
+                        ? CompletableFuture.completedFuture(null)
+                        : verifyPassword(existing, password).thenApply(verified -> loggedIn(existing, password, verified)));
+    }
+
+    /**
+     * getAccountByAccoutId() without blocking the caller. A cached account completes the future
+     * at once; otherwise the lookup runs on the shared DbExecutor.
+     * @param account_id The account_id to verify if it exists in database
+     * @return a future completed with the existing account or null, or failed with a
+     *         RejectedExecutionException if the executor is saturated
+    */
+    public CompletableFuture<Account> getAccountByAccoutIdAsync(int account_id) {
+        Account cachedAccount = accountCache.get(account_id);
+        if (cachedAccount != null) {
+            return CompletableFuture.completedFuture(cachedAccount);
+        }
+        return DbExecutor.shared().supply(() -> getAccountByAccoutId(account_id));
+    }
+
+    /**
+     * getExistingAccountIds() on the shared DbExecutor.
+     * @param account_ids The account_ids to check
+     * @return a future completed with the subset of account_ids that exist, or failed with a
+     *         RejectedExecutionException if the executor is saturated
+    */
+    public CompletableFuture<Set<Integer>> getExistingAccountIdsAsync(Collection<Integer> account_ids) {
+        return DbExecutor.shared().supply(() -> getExistingAccountIds(account_ids));
+    }
+
+    /**
+     * Drop an account from the account cache. Call this whenever the account row is changed or deleted.
+     * @param account_id The account_id to forget
+    */
+    public void invalidateAccount(int account_id) {
+        accountCache.invalidate(account_id);
+    }
+
+    /**
+     * @return hit, miss and eviction counts of the account cache
+    */
+    public CacheStats getAccountCacheStats() {
+        return accountCache.getStats();
+    }
+
+    /**
+     * @return hit, miss and eviction counts of the verified-credential cache
+    */
+    public CacheStats getVerifiedCredentialCacheStats() {
+        return verifiedCredentials.getStats();
+    }
+
+    /**
+     * @return the username filter's estimated false positive rate, or 0 when the filter is turned off
+    */
+    public double getUsernameFilterFalsePositiveRate() {
+        return usernames == null ? 0 : usernames.estimatedFalsePositiveRate();
+    }
+
+    /**
+     * @return a filter holding every username in the database, or null if they could not all be
+     *         read; a partly filled filter would turn existing users away without a query
+    */
+    private static BloomFilter loadUsernameFilter(AccountDAO accountDAO) {
+        try {
+            int capacity = Math.max(USERNAME_FILTER_MIN_CAPACITY, accountDAO.countAccounts() * 2);
+            BloomFilter filter = new BloomFilter(capacity, USERNAME_FILTER_FALSE_POSITIVE_RATE);
+            accountDAO.forEachUsername(filter::put);
+            return filter;
+        } catch (DataAccessException e) {
+            System.out.println("Username filter disabled, usernames could not be loaded: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return false if the username filter says no account has this username, true if one may
+    */
+    private boolean mightExist(String username) {
+        if (usernames == null || usernames.mightContain(username)) {
+            return true;
+        }
+        USERNAME_LOOKUPS_SKIPPED.increment();
+        return false;
+    }
+
+    private static boolean isValidNewAccount(Account account) {
+        return !account.getUsername().isBlank() && account.getPassword().strip().length() >= 4;
+    }
+
+    private CompletableFuture<String> hashPassword(String password) {
+        return hashingExecutor.supply(() -> passwordHasher.hash(password));
+    }
+
+    /**
+     * Check a password against an account's stored hash, from the verified-credential cache when possible.
+    */
+    private CompletableFuture<Boolean> verifyPassword(Account existing, String password) {
+        String username = existing.getUsername();
+        String stored = existing.getPassword();
+        if (verifiedCredentials.isVerified(username, password, stored)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        return hashingExecutor.supply(() -> {
+            boolean verified = passwordHasher.verify(password, stored);
+            if (verified) {
+                verifiedCredentials.markVerified(username, password, stored);
+            }
+            return verified;
+        });
+    }
+
+    /**
+     * Insert a new account, then cache it and hand back one carrying the given password.
+     * The username goes into the filter even if the insert failed, since the usual reason is
+     * that another registration for it won the race.
+    */
+    private Account registered(String username, String hash, String password) {
+        Account stored = accountDAO.insertAccount(new Account(username, hash));
+        if (usernames != null) {
+            usernames.put(username);
+        }
+        if (stored == null) {
+            return null;
+        }
+        accountCache.put(stored.getAccount_id(), stored);
+        verifiedCredentials.markVerified(stored.getUsername(), password, stored.getPassword());
+        return new Account(stored.getAccount_id(), stored.getUsername(), password);
+    }
+
+    /**
+     * Finish a login: cache the stored account, start a re-hash if its hash is outdated, and hand
+     * back an account carrying the given password.
+    */
+    private Account loggedIn(Account stored, String password, boolean verified) {
+        if (!verified) {
+            return null;
+        }
+        accountCache.put(stored.getAccount_id(), stored);
+        if (passwordHasher.needsRehash(stored.getPassword())) {
+            upgradePassword(stored, password);
+        }
+        return new Account(stored.getAccount_id(), stored.getUsername(), password);
+    }
+
+    /**
+     * Replace an outdated stored password with a current hash, in the background. The hash is
+     * computed on the hashing executor and the update runs on the DbExecutor, so neither pool waits
+     * on the other. The update only applies if the row still holds the old value, and a rejected
+     * or failed upgrade is logged and retried on the next login.
+    */
+    private void upgradePassword(Account stored, String password) {
+        hashPassword(password)
+                .thenCompose(hash -> DbExecutor.shared().supply(() -> {
+                    if (accountDAO.updatePassword(stored.getAccount_id(), stored.getPassword(), hash)) {
+                        accountCache.put(stored.getAccount_id(), new Account(stored.getAccount_id(), stored.getUsername(), hash));
+                        verifiedCredentials.markVerified(stored.getUsername(), password, hash);
+                    }
+                    return hash;
+                }))
+                .whenComplete((hash, e) -> {
+                    if (e != null) {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        System.out.println("Password upgrade for account " + stored.getAccount_id() + " failed: " + cause);
+                    }
+                });
+    }
+
+    /**
+     * Wait for a future, rethrowing what it failed with (such as a RejectedExecutionException) as is.
+    */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
 }
 
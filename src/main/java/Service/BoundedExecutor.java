@@ -0,0 +1,78 @@
+package Service;
+
+import Util.Counter;
+import Util.MetricsRegistry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The BoundedExecutor class runs blocking or CPU-heavy service work on a fixed number of threads
+ * with a short bounded queue in front of them. When both are full, new work is rejected at once
+ * instead of piling up: supply() returns a future failed with a RejectedExecutionException,
+ * which the controller answers with a 503.
+ *
+ * Rejections, busy threads and queue depth are published as executor_* metrics labelled with the
+ * executor's name.
+ */
+public class BoundedExecutor {
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    private final Counter rejected;
+
+    /**
+     * @param name names the worker threads and labels the metrics, e.g. "db"
+     * @param threads the number of worker threads
+     * @param queueSize the most tasks that may wait for a worker before new ones are rejected
+     */
+    public BoundedExecutor(String name, int threads, int queueSize) {
+        this.name = name;
+        AtomicInteger nextThread = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, name + "-executor-" + nextThread.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.rejected = MetricsRegistry.DEFAULT.counter("executor_rejected_total",
+                "Tasks refused because the executor and its queue were full", "executor", name);
+    }
+
+    /**
+     * Publish this executor's busy threads and queue depth as gauges. Only the shared
+     * instances do this, so a short-lived executor never replaces them.
+     */
+    protected void publishGauges() {
+        MetricsRegistry.DEFAULT.gauge("executor_active_threads", "Executor threads running a task",
+                executor::getActiveCount, "executor", name);
+        MetricsRegistry.DEFAULT.gauge("executor_queued_tasks", "Tasks waiting for an executor thread",
+                () -> executor.getQueue().size(), "executor", name);
+    }
+
+    /**
+     * Run a call on a worker thread.
+     * @param work the call to run
+     * @return a future completed with the call's result, or failed with a RejectedExecutionException
+     *         if the executor is saturated
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> work) {
+        try {
+            return CompletableFuture.supplyAsync(work, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Stop accepting tasks; tasks already accepted still run.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
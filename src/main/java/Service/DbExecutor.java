@@ -0,0 +1,37 @@
+package Service;
+
+import Util.ConnectionUtil;
+
+/**
+ * The DbExecutor class runs blocking service calls for the async handler pipeline.
+ *
+ * It has exactly as many threads as the connection pool has connections, so a task never waits
+ * on the pool, and a short bounded queue in front of them; see BoundedExecutor for how saturation
+ * is handled. One executor is shared by every service, the same way the connection pool is.
+ */
+public class DbExecutor extends BoundedExecutor {
+
+    private static DbExecutor shared;
+
+    /**
+     * @param threads the number of worker threads, normally the connection pool size
+     * @param queueSize the most tasks that may wait for a worker before new ones are rejected
+     */
+    public DbExecutor(int threads, int queueSize) {
+        super("db", threads, queueSize);
+    }
+
+    /**
+     * The executor shared by the services, sized to the connection pool with a queue of
+     * -Ddb.executor.queueSize tasks (default 4 per connection).
+     * @return the shared executor, created on first use
+     */
+    public static synchronized DbExecutor shared() {
+        if (shared == null) {
+            int threads = ConnectionUtil.getPoolConfig().getMaxSize();
+            shared = new DbExecutor(threads, Integer.getInteger("db.executor.queueSize", threads * 4));
+            shared.publishGauges();
+        }
+        return shared;
+    }
+}
@@ -1,17 +1,81 @@
 package Service;
 
 import Model.Message;
+import Model.MessageBatchResult;
+import Model.MessagePage;
 import DAO.MessageDAO;
+import Util.CacheStats;
+import Util.LruCache;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 public class MessageService {
+    /**
+     * Largest page a client may ask for; bigger limits are clamped to this.
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Most messages accepted in one batch request.
+     */
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    /**
+     * Most messages kept in the message cache, missing ids included; override with -Dcache.messages.maxSize.
+    */
+    private static final int MESSAGE_CACHE_SIZE = Integer.getInteger("cache.messages.maxSize", 10_000);
+
+    /**
+     * Cached in place of a message to remember that its message_id does not exist.
+    */
+    private static final Message MISSING = new Message();
+
     private MessageDAO messageDAO;
 
+    /**
+     * Messages by message_id for getMessagebyId(), filled on lookup misses. Creates and updates
+     * drop the entry for their message_id (a create may replace a cached missing id) and deletes
+     * mark it missing, so the cache never serves a message older than the last change made
+     * through this service. Writes do not fill the cache, so a burst of new messages does not
+     * evict the hot ones.
+    */
+    private final LruCache<Integer, Message> messageCache = new LruCache<>(MESSAGE_CACHE_SIZE);
+
+    /**
+     * Bumped on every write, under cacheLock. A lookup only caches what it read if no write
+     * finished while it was reading, so a slow read can never overwrite a newer write.
+    */
+    private volatile long cacheGeneration;
+    private final Object cacheLock = new Object();
+
+    /**
+     * Every account's messages for getMessagesWrittenByUser() and its pages, patched on every write.
+    */
+    private final TimelineCache timelineCache = TimelineCache.fromSystemProperties();
+
+    /**
+     * Called with the stored row after every create and update, and with the removed row after
+     * every delete, once this service's own caches are up to date.
+    */
+    private final List<Consumer<Message>> mutationListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Optional write-behind queue for new messages; null when inserts go straight to the database.
+    */
+    private MessageWriteBehindQueue writeQueue;
+
     /**
      * No argument constructor to create a new MessageService with a new MessageDAO object.
+     * Write-behind inserts are used if -Dmessages.writeBehind.enabled=true is set.
     */
     public MessageService() {
         this.messageDAO = new MessageDAO();
+        this.writeQueue = MessageWriteBehindQueue.fromSystemProperties(messageDAO);
     }
 
     /**
@@ -22,6 +86,16 @@ public class MessageService {
         this.messageDAO = messageDAO;
     }
 
+    /**
+     * Constructor for a MessageService that inserts new messages through a write-behind queue
+     * @param messageDAO The MessageDAO object to be used by the MessageService
+     * @param writeQueue The queue createNewMessage() hands new messages to, or null to insert directly
+    */
+    public MessageService(MessageDAO messageDAO, MessageWriteBehindQueue writeQueue) {
+        this.messageDAO = messageDAO;
+        this.writeQueue = writeQueue;
+    }
+
     /**
      * Posts a new message to the message database.
      * The creation of the message will be successful if and only if:
@@ -30,25 +104,128 @@ public class MessageService {
      *  - Assumes that Posted_by refers to a real, existing user.
      * @param message The message to create
      * @return the inserted message
+     * @throws java.util.concurrent.RejectedExecutionException if the write-behind queue was closed
+     *         while the message was being queued
     */
     public Message createNewMessage(Message message) {
-        String message_text = message.getMessage_text();
-        int message_textLength = message_text.strip().length();
-        
-        if (message_text.isBlank() || message_textLength > 255) {
+        if (!isValidMessageText(message.getMessage_text())) {
             return null;
         }
-        return messageDAO.insertMessage(message);
+        CompletableFuture<Message> queued = writeQueue == null ? null : writeQueue.submit(message);
+        if (queued != null) {
+            return messageCreated(await(queued));
+        }
+        return messageCreated(messageDAO.insertMessage(message));
+    }
+
+    /**
+     * Posts a new message, using the same rules as createNewMessage(), without waiting for the insert.
+     * With a write-behind queue the message is group-committed with others; if the queue is full,
+     * or there is none, it is inserted on the shared DbExecutor.
+     * @param message The message to create
+     * @return a future completed with the inserted message, or with null if it was not created,
+     *         or failed with a RejectedExecutionException if the executor is saturated
+    */
+    public CompletableFuture<Message> createNewMessageAsync(Message message) {
+        if (!isValidMessageText(message.getMessage_text())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Message> queued = writeQueue == null ? null : writeQueue.submit(message);
+        if (queued != null) {
+            return queued.thenApply(this::messageCreated);
+        }
+        return DbExecutor.shared().supply(() -> messageCreated(messageDAO.insertMessage(message)));
     }
 
     /**
-     * Find a message in the database by message_id
-     * @param message
-     * @return The message object that was found in the database
+     * Stop the write-behind queue, if there is one, after writing every message still in it.
+     * Messages created afterwards are inserted directly. Call this when the application stops.
+    */
+    public void close() {
+        if (writeQueue != null) {
+            writeQueue.close();
+        }
+    }
+
+    /**
+     * @return queue depth and flush statistics of the write-behind queue, or null if it is not enabled
+    */
+    public WriteQueueStats getWriteQueueStats() {
+        return writeQueue == null ? null : writeQueue.getStats();
+    }
+
+    /**
+     * Posts many new messages at once, using the same rules as createNewMessage().
+     * Every valid message is inserted in a single batch and transaction; invalid ones are skipped.
+     * If the database rejects the batch, the messages are inserted one at a time instead, so a
+     * message the database refuses only fails itself.
+     * @param messages The messages to create, at most MAX_BATCH_SIZE
+     * @param existingAccountIds The account_ids known to exist; messages posted by anyone else are rejected
+     * @return one result per message, in request order, with status 200 and the inserted message,
+     *         400 if the message was rejected, or 500 if it could not be stored
+    */
+    public List<MessageBatchResult> createNewMessages(List<Message> messages, Set<Integer> existingAccountIds) {
+        List<MessageBatchResult> results = new ArrayList<>(messages.size());
+        List<Message> accepted = new ArrayList<>(messages.size());
+        List<Integer> acceptedIndexes = new ArrayList<>(messages.size());
+
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            results.add(new MessageBatchResult(i, 400, null));
+            if (message != null && isValidMessageText(message.getMessage_text())
+                    && existingAccountIds.contains(message.getPosted_by())) {
+                accepted.add(message);
+                acceptedIndexes.add(i);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return results;
+        }
+
+        List<Message> inserted = messageDAO.insertMessages(accepted);
+        if (inserted == null) {
+            // the batch was rolled back as a whole; retry each message on its own
+            inserted = new ArrayList<>(accepted.size());
+            for (Message message : accepted) {
+                inserted.add(messageDAO.insertMessage(message));
+            }
+        }
+        for (int j = 0; j < acceptedIndexes.size(); j++) {
+            MessageBatchResult result = results.get(acceptedIndexes.get(j));
+            Message message = inserted.get(j);
+            if (message == null) {
+                result.setStatus(500);
+            } else {
+                result.setStatus(200);
+                result.setMessage(messageCreated(message));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Find a message by message_id, from the message cache when possible.
+     * Missing ids are cached too, so repeated lookups of a deleted or unknown id stay off the database.
+     * Only an absence the database confirmed is cached: a failed lookup throws and leaves the cache alone.
+     * @param message_id The message_id to search for
+     * @return The message object that was found, or null if there is none
+     * @throws DAO.DataAccessException if the lookup failed
     */
     public Message getMessagebyId(int message_id) {
-        return messageDAO.findMessageByMessageId(message_id);
-    } 
+        Message cached = messageCache.get(message_id);
+        if (cached != null) {
+            return cached == MISSING ? null : cached;
+        }
+
+        long generation = cacheGeneration;
+        Message message = messageDAO.findMessageByMessageId(message_id);
+        synchronized (cacheLock) {
+            if (cacheGeneration == generation) {
+                messageCache.put(message_id, message == null ? MISSING : message);
+            }
+        }
+        return message;
+    }
 
     /**
      * Retrieve all existing messages.
@@ -59,12 +236,65 @@ public class MessageService {
     }
 
     /**
-     * Retrieve all messages written by a user 
+     * Retrieve all existing messages one at a time, without building a list of them.
+     * @param consumer receives each message in message_id order
+     * @throws DAO.DataAccessException if the query failed, possibly after some messages were handed over
+    */
+    public void streamAllMessages(Consumer<Message> consumer) {
+        messageDAO.streamAllMessages(consumer);
+    }
+
+    /**
+     * Retrieve all messages written by a user, from the timeline cache when possible.
+     * A failed load throws and caches nothing, so it is never mistaken for an empty timeline.
      * @param posted_by which is a foreign-key as account_id 
-     * @return List of messages which are posted by a user
+     * @return List of messages which are posted by a user, ordered by message_id
+     * @throws DAO.DataAccessException if the messages could not be read
     */
     public List<Message> getMessagesWrittenByUser(int posted_by) {
-        return messageDAO.findAllMessagesWrittenByUser(posted_by);
+        List<Message> cached = timelineCache.get(posted_by);
+        if (cached != null) {
+            return cached;
+        }
+
+        Object stamp = timelineCache.startLoad(posted_by);
+        List<Message> messages;
+        try {
+            messages = messageDAO.findAllMessagesWrittenByUser(posted_by);
+        } catch (RuntimeException e) {
+            timelineCache.abortLoad(posted_by, stamp);
+            throw e;
+        }
+        timelineCache.finishLoad(posted_by, stamp, messages);
+        return messages;
+    }
+
+    /**
+     * Retrieve one page of messages, ordered by message_id.
+     * @param after the cursor returned with the previous page, or 0 for the first page
+     * @param limit the page size, clamped to MAX_PAGE_SIZE
+     * @return the page of messages and the cursor for the next one
+    */
+    public MessagePage getMessagesPage(int after, int limit) {
+        int pageSize = Math.min(limit, MAX_PAGE_SIZE);
+        // ask for one extra row to know whether another page follows
+        return toPage(messageDAO.findMessagesAfter(after, pageSize + 1), pageSize);
+    }
+
+    /**
+     * Retrieve one page of the messages written by a user, ordered by message_id.
+     * @param posted_by which is a foreign-key as account_id
+     * @param after the cursor returned with the previous page, or 0 for the first page
+     * @param limit the page size, clamped to MAX_PAGE_SIZE
+     * @return the page of messages and the cursor for the next one
+    */
+    public MessagePage getMessagesWrittenByUserPage(int posted_by, int after, int limit) {
+        int pageSize = Math.min(limit, MAX_PAGE_SIZE);
+        List<Message> cached = timelineCache.get(posted_by);
+        if (cached != null) {
+            return toPage(messagesAfter(cached, after, pageSize + 1), pageSize);
+        }
+        return toPage(messageDAO.findMessagesWrittenByUserAfter(posted_by, after, pageSize + 1), pageSize);
     }
 
     /**
@@ -75,16 +305,8 @@ public class MessageService {
      *         or null if no message was found
     */
     public Message deleteMessageByMessageId(int message_id) {
-        // find the message by message_id
-        Message message = messageDAO.findMessageByMessageId(message_id);
-
-        // delete the message if it exists
-        if(message != null) {
-            messageDAO.deleteMessage(message_id);
-        }
-        
-        // return the message that was deleted or null if no message was found
-        return message;
+        // delete the message and get back the row that was removed, in a single round trip
+        return messageDeleted(messageDAO.deleteMessage(message_id));
     }
 
     /**
@@ -99,25 +321,259 @@ public class MessageService {
      *         or null if no message was updated
     */
     public Message updateMessageByMessageId(int message_id, Message new_message) {
-        // check if message_id exists in database
-        Message oldMessage = messageDAO.findMessageByMessageId(message_id);
-        if(oldMessage == null) {
-            return null;
-        }
-        // check if new message text is valid
+        // check if new message text is valid before touching the database
         String newMessageText = new_message.getMessage_text();
-        if(newMessageText.isBlank() || newMessageText.length() >= 255){
+        if(newMessageText == null || newMessageText.isBlank() || newMessageText.length() >= 255){
             return null;
         }
 
-        // update the message_id in the message database with the new message text
-        Boolean updated = messageDAO.updateMessageText(message_id, newMessageText);
+        // update the message and get back the updated row in a single statement;
+        // null means the message_id does not exist
+        return messageUpdated(messageDAO.updateMessageText(message_id, newMessageText));
+    }
 
-        if(updated) {
-            // get the updated message and return it
-            return messageDAO.findMessageByMessageId(message_id);
-        } else {
+    /**
+     * createNewMessages() on the shared DbExecutor.
+     * @param messages The messages to create, at most MAX_BATCH_SIZE
+     * @param existingAccountIds The account_ids known to exist
+     * @return a future completed with one result per message, or failed with a
+     *         RejectedExecutionException if the executor is saturated
+    */
+    public CompletableFuture<List<MessageBatchResult>> createNewMessagesAsync(List<Message> messages, Set<Integer> existingAccountIds) {
+        return DbExecutor.shared().supply(() -> createNewMessages(messages, existingAccountIds));
+    }
+
+    /**
+     * getMessagebyId() without blocking the caller. A cached message or missing id completes the
+     * future at once; otherwise the lookup runs on the shared DbExecutor.
+     * @param message_id The message_id to search for in the database
+     * @return a future completed with the message or null, or failed with a
+     *         RejectedExecutionException if the executor is saturated
+    */
+    public CompletableFuture<Message> getMessagebyIdAsync(int message_id) {
+        Message cached = messageCache.get(message_id);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached == MISSING ? null : cached);
+        }
+        return DbExecutor.shared().supply(() -> getMessagebyId(message_id));
+    }
+
+    /**
+     * streamAllMessages() on the shared DbExecutor; the consumer is called on the executor thread.
+     * @param consumer receives each message in message_id order
+     * @return a future completed once every message has been handed over, or failed with a
+     *         RejectedExecutionException if the executor is saturated
+    */
+    public CompletableFuture<Void> streamAllMessagesAsync(Consumer<Message> consumer) {
+        return DbExecutor.shared().supply(() -> {
+            streamAllMessages(consumer);
             return null;
+        });
+    }
+
+    /**
+     * getMessagesWrittenByUser() without blocking the caller. A cached timeline completes the
+     * future at once; otherwise the lookup runs on the shared DbExecutor.
+     * @param posted_by which is a foreign-key as account_id
+     * @return a future completed with the user's messages, or failed with a
+     *         RejectedExecutionException if the executor is saturated
+    */
+    public CompletableFuture<List<Message>> getMessagesWrittenByUserAsync(int posted_by) {
+        List<Message> cached = timelineCache.get(posted_by);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return DbExecutor.shared().supply(() -> getMessagesWrittenByUser(posted_by));
+    }
+
+    /**
+     * getMessagesPage() on the shared DbExecutor.
+     * @param after the cursor returned with the previous page, or 0 for the first page
+     * @param limit the page size, clamped to MAX_PAGE_SIZE
+     * @return a future completed with the page, or failed with a
+     *         RejectedExecutionException if the executor is saturated
+    */
+    public CompletableFuture<MessagePage> getMessagesPageAsync(int after, int limit) {
+        return DbExecutor.shared().supply(() -> getMessagesPage(after, limit));
+    }
+
+    /**
+     * getMessagesWrittenByUserPage() on the shared DbExecutor.
+     * @param posted_by which is a foreign-key as account_id
+     * @param after the cursor returned with the previous page, or 0 for the first page
+     * @param limit the page size, clamped to MAX_PAGE_SIZE
+     * @return a future completed with the page, or failed with a
+     *         RejectedExecutionException if the executor is saturated
+    */
+    public CompletableFuture<MessagePage> getMessagesWrittenByUserPageAsync(int posted_by, int after, int limit) {
+        return DbExecutor.shared().supply(() -> getMessagesWrittenByUserPage(posted_by, after, limit));
+    }
+
+    /**
+     * deleteMessageByMessageId() on the shared DbExecutor.
+     * @param message_id The message_id to search for in the database
+     * @return a future completed with the deleted message or null, or failed with a
+     *         RejectedExecutionException if the executor is saturated
+    */
+    public CompletableFuture<Message> deleteMessageByMessageIdAsync(int message_id) {
+        return DbExecutor.shared().supply(() -> deleteMessageByMessageId(message_id));
+    }
+
+    /**
+     * updateMessageByMessageId() on the shared DbExecutor.
+     * @param message_id The message_id to search for in the database
+     * @param new_message which has the the message_text to update in the database
+     * @return a future completed with the updated message or null, or failed with a
+     *         RejectedExecutionException if the executor is saturated
+    */
+    public CompletableFuture<Message> updateMessageByMessageIdAsync(int message_id, Message new_message) {
+        return DbExecutor.shared().supply(() -> updateMessageByMessageId(message_id, new_message));
+    }
+
+    /**
+     * @return hit, miss and eviction counts of the message cache
+    */
+    public CacheStats getMessageCacheStats() {
+        return messageCache.getStats();
+    }
+
+    /**
+     * Register a listener for message changes, such as a cache of responses built from messages.
+     * It runs on the thread that made the change, after the database write and after this
+     * service's caches were updated, so anything it reloads sees the change.
+     * @param listener receives each created, updated or deleted message
+    */
+    public void addMutationListener(Consumer<Message> listener) {
+        mutationListeners.add(listener);
+    }
+
+    /**
+     * @return hit, miss and eviction counts of the timeline cache
+    */
+    public CacheStats getTimelineCacheStats() {
+        return timelineCache.getStats();
+    }
+
+    /**
+     * @return the estimated heap used by the timeline cache
+    */
+    public long getTimelineCacheBytes() {
+        return timelineCache.getBytes();
+    }
+
+    /**
+     * Bring the caches up to date with a message that was just inserted: its message_id may have
+     * been cached as missing, and its account's timeline gains it.
+     * @param message the row as stored, or null if nothing was inserted
+     * @return the same message, for chaining
+    */
+    private Message messageCreated(Message message) {
+        if (message != null) {
+            synchronized (cacheLock) {
+                cacheGeneration++;
+                messageCache.invalidate(message.getMessage_id());
+            }
+            timelineCache.added(message);
+            notifyMutationListeners(message);
+        }
+        return message;
+    }
+
+    /**
+     * Bring the caches up to date with a message that was just updated.
+     * @param message the row as stored, or null if nothing was updated
+     * @return the same message, for chaining
+    */
+    private Message messageUpdated(Message message) {
+        if (message != null) {
+            synchronized (cacheLock) {
+                cacheGeneration++;
+                messageCache.invalidate(message.getMessage_id());
+            }
+            timelineCache.updated(message);
+            notifyMutationListeners(message);
+        }
+        return message;
+    }
+
+    /**
+     * Bring the caches up to date with a message that was just deleted.
+     * @param message the row that was removed, or null if nothing was deleted
+     * @return the same message, for chaining
+    */
+    private Message messageDeleted(Message message) {
+        if (message != null) {
+            synchronized (cacheLock) {
+                cacheGeneration++;
+                messageCache.put(message.getMessage_id(), MISSING);
+            }
+            timelineCache.deleted(message);
+            notifyMutationListeners(message);
+        }
+        return message;
+    }
+
+    private void notifyMutationListeners(Message message) {
+        for (Consumer<Message> listener : mutationListeners) {
+            listener.accept(message);
+        }
+    }
+
+    /**
+     * @param timeline messages ordered by message_id
+     * @param after the cursor; only messages with a greater message_id are returned
+     * @param count the most messages to return
+     * @return up to count messages of the timeline that follow the cursor
+    */
+    private static List<Message> messagesAfter(List<Message> timeline, int after, int count) {
+        int low = 0;
+        int high = timeline.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timeline.get(mid).getMessage_id() <= after) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return timeline.subList(low, Math.min(timeline.size(), low + count));
+    }
+
+    /**
+     * A message_text is valid if it is not blank and not over 255 characters. The text is stored as
+     * given, so surrounding whitespace counts towards the limit, the same as in the column.
+     * @param message_text the text to check
+     * @return true if a message with this text may be created
+    */
+    private boolean isValidMessageText(String message_text) {
+        return message_text != null && !message_text.isBlank() && message_text.length() <= 255;
+    }
+
+    /**
+     * Wait for a future, rethrowing what it failed with (such as a RejectedExecutionException) as is.
+    */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Trim a result fetched with one extra row down to pageSize and derive the next cursor from it.
+     * @param rows up to pageSize + 1 messages ordered by message_id
+     * @param pageSize the number of messages the page should hold
+     * @return the page, with a null next_cursor if rows held no extra row
+    */
+    private MessagePage toPage(List<Message> rows, int pageSize) {
+        if (rows.size() <= pageSize) {
+            return new MessagePage(rows, null);
         }
+        List<Message> page = rows.subList(0, pageSize);
+        return new MessagePage(page, page.get(pageSize - 1).getMessage_id());
     }
 }
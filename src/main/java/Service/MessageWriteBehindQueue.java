@@ -0,0 +1,219 @@
+package Service;
+
+import Model.Message;
+import DAO.MessageDAO;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind queue for new messages.
+ * Callers hand over a message and get a future; a single writer thread collects queued messages
+ * and inserts them with one batch and one commit once batchSize messages are waiting or
+ * maxDelayMillis has passed since the first of them arrived, then completes each future with
+ * the inserted message and its generated message_id.
+ *
+ * Under load this turns many single-row commits into a few multi-row ones, at the cost of up to
+ * maxDelayMillis of extra latency per message. A batch is one transaction, so if the database
+ * refuses one of its rows the others are written again one at a time, and only the refused
+ * message fails.
+ */
+public class MessageWriteBehindQueue {
+    private final MessageDAO messageDAO;
+    private final BlockingQueue<PendingInsert> queue;
+    private final int capacity;
+    private final int batchSize;
+    private final long maxDelayMillis;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder rowsFlushed = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    /**
+     * Create the queue and start its writer thread.
+     * @param messageDAO the DAO the writer inserts through
+     * @param capacity the most messages that may wait at once
+     * @param batchSize the most messages written per commit
+     * @param maxDelayMillis the longest a message waits for others to share its commit
+     */
+    public MessageWriteBehindQueue(MessageDAO messageDAO, int capacity, int batchSize, long maxDelayMillis) {
+        this.messageDAO = messageDAO;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.writer = new Thread(this::writeLoop, "message-write-behind");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Build a queue from the "messages.writeBehind.*" system properties, if write-behind is enabled.
+     * @param messageDAO the DAO the writer inserts through
+     * @return the running queue, or null if -Dmessages.writeBehind.enabled=true was not given
+     */
+    public static MessageWriteBehindQueue fromSystemProperties(MessageDAO messageDAO) {
+        if (!Boolean.getBoolean("messages.writeBehind.enabled")) {
+            return null;
+        }
+        return new MessageWriteBehindQueue(messageDAO,
+                Integer.getInteger("messages.writeBehind.capacity", 10_000),
+                Integer.getInteger("messages.writeBehind.batchSize", 256),
+                Long.getLong("messages.writeBehind.maxDelayMillis", 5));
+    }
+
+    /**
+     * Queue a message for insertion.
+     * @param message an already validated message
+     * @return a future completed with the inserted message (or null if the insert failed), or
+     *         failed with a RejectedExecutionException if the queue was closed while the message
+     *         was being queued; or null if the queue is full or stopped and the caller should
+     *         insert the message itself
+     */
+    public CompletableFuture<Message> submit(Message message) {
+        if (!running) {
+            return null;
+        }
+        PendingInsert pending = new PendingInsert(message);
+        if (!queue.offer(pending)) {
+            rejected.increment();
+            return null;
+        }
+        // close() may have drained the queue between the check above and the offer; nobody
+        // would ever write this message then, so fail it instead of leaving its caller waiting
+        if (!running && queue.remove(pending)) {
+            pending.future.completeExceptionally(new RejectedExecutionException("The message write-behind queue is closed"));
+        }
+        return pending.future;
+    }
+
+    /**
+     * Stop accepting messages, write everything still queued, and stop the writer thread.
+     */
+    public void close() {
+        // no interrupt: an interrupt inside H2's file I/O closes the database file
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingInsert> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            flush(remaining);
+        }
+    }
+
+    /**
+     * @return a snapshot of the queue depth and flush statistics
+     */
+    public WriteQueueStats getStats() {
+        long count = flushes.sum();
+        return new WriteQueueStats(queue.size(), capacity, count, rowsFlushed.sum(), failedFlushes.sum(),
+                rejected.sum(), count == 0 ? 0 : flushNanos.sum() / count, maxFlushNanos.get());
+    }
+
+    private void writeLoop() {
+        List<PendingInsert> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                PendingInsert first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingInsert next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // stop waiting; whatever was collected is still written below
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingInsert> batch) {
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (PendingInsert pending : batch) {
+            messages.add(pending.message);
+        }
+
+        long start = System.nanoTime();
+        List<Message> inserted = null;
+        try {
+            inserted = messageDAO.insertMessages(messages);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        if (inserted == null) {
+            failedFlushes.increment();
+            // the batch was rolled back as a whole; retry each message on its own
+            inserted = new ArrayList<>(messages.size());
+            for (Message message : messages) {
+                inserted.add(insertOne(message));
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        flushes.increment();
+        flushNanos.add(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+
+        for (int i = 0; i < batch.size(); i++) {
+            Message message = inserted.get(i);
+            if (message != null) {
+                rowsFlushed.increment();
+            }
+            batch.get(i).future.complete(message);
+        }
+    }
+
+    private Message insertOne(Message message) {
+        try {
+            return messageDAO.insertMessage(message);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * A queued message and the future its caller is waiting on.
+     */
+    private static class PendingInsert {
+        final Message message;
+        final CompletableFuture<Message> future = new CompletableFuture<>();
+
+        PendingInsert(Message message) {
+            this.message = message;
+        }
+    }
+}
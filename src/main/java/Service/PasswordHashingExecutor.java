@@ -0,0 +1,36 @@
+package Service;
+
+/**
+ * The PasswordHashingExecutor class runs password hashing and verification.
+ *
+ * Hashing is deliberately slow and CPU-bound, so it gets its own few threads instead of running
+ * on request or DB threads: a burst of logins or registrations can only use these threads, and
+ * once their bounded queue is full further ones are refused with a 503, while message traffic
+ * keeps its CPU. One executor is shared by every AccountService.
+ */
+public class PasswordHashingExecutor extends BoundedExecutor {
+
+    private static PasswordHashingExecutor shared;
+
+    /**
+     * @param threads the number of hashing threads
+     * @param queueSize the most hashes that may wait for a thread before new ones are rejected
+     */
+    public PasswordHashingExecutor(int threads, int queueSize) {
+        super("password-hashing", threads, queueSize);
+    }
+
+    /**
+     * The executor shared by the account services, with -Dauth.hashing.threads threads (default
+     * half the processors, at least one) and a queue of -Dauth.hashing.queueSize (default 64).
+     * @return the shared executor, created on first use
+     */
+    public static synchronized PasswordHashingExecutor shared() {
+        if (shared == null) {
+            int threads = Integer.getInteger("auth.hashing.threads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+            shared = new PasswordHashingExecutor(threads, Integer.getInteger("auth.hashing.queueSize", 64));
+            shared.publishGauges();
+        }
+        return shared;
+    }
+}
@@ -0,0 +1,299 @@
+package Service;
+
+import Model.Message;
+import Util.CacheStats;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The TimelineCache class keeps, per account, every message the account has posted, ordered by
+ * message_id, so GET /accounts/{account_id}/messages and its pages are answered without a query.
+ *
+ * A cached timeline is an immutable array: readers get a view of it without locking, and writes
+ * replace it with a patched copy. New messages are inserted in place rather than reloading the
+ * account, and deletes remove the one message they touch. Both are ordered by the data itself
+ * (a message_id is only ever inserted once and removed once), so they can be applied in any order.
+ * Updates are not: two updates of one message may reach the cache in the opposite order of their
+ * commits, so an update drops the account's timeline and the next read loads it again.
+ *
+ * Memory is bounded by a global byte budget: the estimated size of every cached timeline is kept,
+ * and least recently used accounts are evicted until the total fits. Accounts with more than
+ * maxMessages messages are not cached at all and always go to the database.
+ *
+ * Loading races with writes are handled with a per-account stamp: a load first registers a
+ * pending entry, any write for that account marks it stale, and the load is only installed if
+ * its pending entry is still there and was not marked.
+ */
+public class TimelineCache {
+
+    /**
+     * Rough heap cost of one cached message besides its text: the Message, its String and the array slot.
+    */
+    private static final long MESSAGE_OVERHEAD_BYTES = 96;
+
+    /**
+     * Rough heap cost of one cached timeline besides its messages.
+    */
+    private static final long TIMELINE_OVERHEAD_BYTES = 64;
+
+    private final long maxBytes;
+    private final int maxMessages;
+
+    /**
+     * Timelines by account_id, least recently used first. Guarded by itself.
+    */
+    private final LinkedHashMap<Integer, Timeline> timelines = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes the estimated heap all cached timelines may use together
+     * @param maxMessages the longest timeline that is cached
+    */
+    public TimelineCache(long maxBytes, int maxMessages) {
+        this.maxBytes = maxBytes;
+        this.maxMessages = maxMessages;
+    }
+
+    /**
+     * Build a cache from -Dcache.timelines.maxBytes (default 32 MiB) and
+     * -Dcache.timelines.maxMessages (default 1000).
+     * @return the cache to use for the application
+    */
+    public static TimelineCache fromSystemProperties() {
+        return new TimelineCache(Long.getLong("cache.timelines.maxBytes", 32L * 1024 * 1024),
+                Integer.getInteger("cache.timelines.maxMessages", 1000));
+    }
+
+    /**
+     * Look up an account's timeline and count the hit or miss.
+     * @param account_id the account whose messages to get
+     * @return the account's messages ordered by message_id, as an unmodifiable list, or null if not cached
+    */
+    public List<Message> get(int account_id) {
+        Timeline timeline;
+        synchronized (timelines) {
+            timeline = timelines.get(account_id);
+        }
+        if (timeline == null || timeline.messages == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return Collections.unmodifiableList(Arrays.asList(timeline.messages));
+    }
+
+    /**
+     * Start loading an account's timeline. Call this before querying the database, and pass the
+     * returned stamp to finishLoad() with what the query returned.
+     * @param account_id the account about to be loaded
+     * @return the stamp of this load
+    */
+    public Object startLoad(int account_id) {
+        Timeline pending = new Timeline(null, 0);
+        synchronized (timelines) {
+            Timeline current = timelines.get(account_id);
+            if (current != null && current.messages != null) {
+                // somebody else finished loading it meanwhile; this load will simply not be installed
+                return pending;
+            }
+            timelines.put(account_id, pending);
+        }
+        return pending;
+    }
+
+    /**
+     * Install a loaded timeline, unless a write for the account happened since startLoad().
+     * @param account_id the account that was loaded
+     * @param stamp what startLoad() returned
+     * @param messages the account's messages ordered by message_id
+    */
+    public void finishLoad(int account_id, Object stamp, List<Message> messages) {
+        synchronized (timelines) {
+            Timeline pending = timelines.get(account_id);
+            if (pending != stamp) {
+                return;
+            }
+            if (pending.stale || messages.size() > maxMessages) {
+                timelines.remove(account_id);
+                return;
+            }
+            Message[] loaded = messages.toArray(new Message[0]);
+            replace(account_id, pending, new Timeline(loaded, estimateBytes(loaded)));
+        }
+    }
+
+    /**
+     * Give up a load started with startLoad() whose query failed, so nothing is installed for it.
+     * @param account_id the account that was being loaded
+     * @param stamp what startLoad() returned
+    */
+    public void abortLoad(int account_id, Object stamp) {
+        synchronized (timelines) {
+            if (timelines.get(account_id) == stamp) {
+                timelines.remove(account_id);
+            }
+        }
+    }
+
+    /**
+     * Add a new message to its account's timeline, if that is cached.
+     * @param message the inserted message
+    */
+    public void added(Message message) {
+        synchronized (timelines) {
+            Timeline timeline = timelineToPatch(message.getPosted_by());
+            if (timeline == null) {
+                return;
+            }
+            int index = Arrays.binarySearch(timeline.messages, message, TimelineCache::compareIds);
+            if (index >= 0) {
+                return;
+            }
+            int insertAt = -index - 1;
+            if (timeline.messages.length >= maxMessages) {
+                remove(message.getPosted_by(), timeline);
+                return;
+            }
+            Message[] patched = new Message[timeline.messages.length + 1];
+            System.arraycopy(timeline.messages, 0, patched, 0, insertAt);
+            patched[insertAt] = message;
+            System.arraycopy(timeline.messages, insertAt, patched, insertAt + 1, timeline.messages.length - insertAt);
+            replace(message.getPosted_by(), timeline, new Timeline(patched, timeline.bytes + estimateBytes(message)));
+        }
+    }
+
+    /**
+     * Drop the timeline of an updated message's account, and keep a load in progress from being
+     * installed. Patching in the caller's copy could install an older text over a newer one when
+     * two updates race, so the next read loads the account again instead.
+     * @param message the message as it is now stored
+    */
+    public void updated(Message message) {
+        synchronized (timelines) {
+            Timeline timeline = timelineToPatch(message.getPosted_by());
+            if (timeline != null) {
+                remove(message.getPosted_by(), timeline);
+            }
+        }
+    }
+
+    /**
+     * Remove a deleted message from its account's timeline, if that is cached.
+     * @param message the message that was deleted
+    */
+    public void deleted(Message message) {
+        synchronized (timelines) {
+            Timeline timeline = timelineToPatch(message.getPosted_by());
+            if (timeline == null) {
+                return;
+            }
+            int index = Arrays.binarySearch(timeline.messages, message, TimelineCache::compareIds);
+            if (index < 0) {
+                return;
+            }
+            Message[] patched = new Message[timeline.messages.length - 1];
+            System.arraycopy(timeline.messages, 0, patched, 0, index);
+            System.arraycopy(timeline.messages, index + 1, patched, index, patched.length - index);
+            replace(message.getPosted_by(), timeline, new Timeline(patched,
+                    timeline.bytes - estimateBytes(timeline.messages[index])));
+        }
+    }
+
+    /**
+     * @return hit, miss and eviction counts and the number of cached timelines; the cache is
+     *         bounded by bytes rather than entries, so maxSize is 0
+    */
+    public CacheStats getStats() {
+        int size;
+        synchronized (timelines) {
+            size = timelines.size();
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size, 0);
+    }
+
+    /**
+     * @return the estimated heap used by the cached timelines
+    */
+    public long getBytes() {
+        synchronized (timelines) {
+            return bytes;
+        }
+    }
+
+    /**
+     * @return the loaded timeline of an account, or null if there is none to patch; a pending load
+     *         is marked stale instead so it is not installed. Must hold the lock.
+    */
+    private Timeline timelineToPatch(int account_id) {
+        Timeline timeline = timelines.get(account_id);
+        if (timeline == null) {
+            return null;
+        }
+        if (timeline.messages == null) {
+            timeline.stale = true;
+            return null;
+        }
+        return timeline;
+    }
+
+    /**
+     * Swap in a new timeline for an account and evict least recently used ones until the budget fits.
+     * Must hold the lock.
+    */
+    private void replace(int account_id, Timeline old, Timeline timeline) {
+        timelines.put(account_id, timeline);
+        bytes += timeline.bytes - old.bytes;
+        Iterator<Map.Entry<Integer, Timeline>> eldest = timelines.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Timeline evicted = eldest.next().getValue();
+            eldest.remove();
+            bytes -= evicted.bytes;
+            evictions.increment();
+        }
+    }
+
+    private void remove(int account_id, Timeline timeline) {
+        timelines.remove(account_id);
+        bytes -= timeline.bytes;
+    }
+
+    private static long estimateBytes(Message[] messages) {
+        long total = TIMELINE_OVERHEAD_BYTES;
+        for (Message message : messages) {
+            total += estimateBytes(message);
+        }
+        return total;
+    }
+
+    private static long estimateBytes(Message message) {
+        String text = message.getMessage_text();
+        return MESSAGE_OVERHEAD_BYTES + (text == null ? 0 : 2L * text.length());
+    }
+
+    private static int compareIds(Message a, Message b) {
+        return Integer.compare(a.getMessage_id(), b.getMessage_id());
+    }
+
+    /**
+     * One account's cached messages, or a pending load when messages is null.
+    */
+    private static class Timeline {
+        final Message[] messages;
+        final long bytes;
+        boolean stale;
+
+        Timeline(Message[] messages, long bytes) {
+            this.messages = messages;
+            this.bytes = bytes;
+        }
+    }
+}
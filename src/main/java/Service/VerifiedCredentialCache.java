@@ -0,0 +1,109 @@
+package Service;
+
+import Util.CacheStats;
+import Util.LruCache;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The VerifiedCredentialCache class remembers, for a short time, which username and password
+ * pairs were just verified against which stored hash, so a client logging in again and again does
+ * not pay for a full password hash every time.
+ *
+ * Nothing readable is kept: an entry's key is an HMAC, under a random key made at startup, of the
+ * username, the password and the stored hash. Including the stored hash means a changed password
+ * never matches an old entry. Entries expire after the TTL and the cache is size-bounded.
+ */
+public class VerifiedCredentialCache {
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private final long ttlNanos;
+    private final LruCache<String, Long> verifiedUntil;
+    private final SecretKeySpec key;
+
+    /**
+     * Mac instances are not thread-safe, so each thread keeps its own.
+     */
+    private final ThreadLocal<Mac> macs;
+
+    /**
+     * @param maxSize the most credentials to remember
+     * @param ttlMillis how long a verification is trusted; 0 turns the cache off
+     */
+    public VerifiedCredentialCache(int maxSize, long ttlMillis) {
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.verifiedUntil = new LruCache<>(maxSize);
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, MAC_ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /**
+     * Build a cache from -Dauth.verifiedCache.ttlSeconds (default 60) and
+     * -Dauth.verifiedCache.maxSize (default 10000).
+     * @return the cache to use for the application
+     */
+    public static VerifiedCredentialCache fromSystemProperties() {
+        return new VerifiedCredentialCache(Integer.getInteger("auth.verifiedCache.maxSize", 10_000),
+                Long.getLong("auth.verifiedCache.ttlSeconds", 60) * 1000);
+    }
+
+    /**
+     * @param username the username given at login
+     * @param password the password given at login
+     * @param stored the stored hash of the account
+     * @return true if this exact pair was verified against this hash within the TTL
+     */
+    public boolean isVerified(String username, String password, String stored) {
+        if (ttlNanos == 0) {
+            return false;
+        }
+        Long until = verifiedUntil.get(digest(username, password, stored));
+        return until != null && until - System.nanoTime() > 0;
+    }
+
+    /**
+     * Remember that a pair was verified against a stored hash.
+     * @param username the username given at login
+     * @param password the password given at login
+     * @param stored the stored hash of the account
+     */
+    public void markVerified(String username, String password, String stored) {
+        if (ttlNanos == 0) {
+            return;
+        }
+        verifiedUntil.put(digest(username, password, stored), System.nanoTime() + ttlNanos);
+    }
+
+    /**
+     * @return hit, miss and eviction counts of the cache
+     */
+    public CacheStats getStats() {
+        return verifiedUntil.getStats();
+    }
+
+    private String digest(String username, String password, String stored) {
+        Mac mac = macs.get();
+        mac.update(username.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        mac.update(password.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        return Base64.getEncoder().encodeToString(mac.doFinal(stored.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(MAC_ALGORITHM + " is not available", e);
+        }
+    }
+}
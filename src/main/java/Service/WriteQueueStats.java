@@ -0,0 +1,97 @@
+package Service;
+
+/**
+ * The WriteQueueStats class is a point-in-time snapshot of a MessageWriteBehindQueue.
+ */
+public class WriteQueueStats {
+    private final int depth;
+    private final int capacity;
+    private final long flushes;
+    private final long rowsFlushed;
+    private final long failedFlushes;
+    private final long rejected;
+    private final long averageFlushNanos;
+    private final long maxFlushNanos;
+
+    public WriteQueueStats(int depth, int capacity, long flushes, long rowsFlushed, long failedFlushes,
+            long rejected, long averageFlushNanos, long maxFlushNanos) {
+        this.depth = depth;
+        this.capacity = capacity;
+        this.flushes = flushes;
+        this.rowsFlushed = rowsFlushed;
+        this.failedFlushes = failedFlushes;
+        this.rejected = rejected;
+        this.averageFlushNanos = averageFlushNanos;
+        this.maxFlushNanos = maxFlushNanos;
+    }
+
+    /**
+     * @return messages waiting to be written
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return the most messages the queue holds before new ones are written directly
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of group commits made
+     */
+    public long getFlushes() {
+        return flushes;
+    }
+
+    /**
+     * @return number of messages written by all group commits
+     */
+    public long getRowsFlushed() {
+        return rowsFlushed;
+    }
+
+    /**
+     * @return number of group commits that failed, were rolled back and were retried one message at a time
+     */
+    public long getFailedFlushes() {
+        return failedFlushes;
+    }
+
+    /**
+     * @return number of messages that found the queue full and were inserted directly instead
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return mean time to write one group commit, in nanoseconds
+     */
+    public long getAverageFlushNanos() {
+        return averageFlushNanos;
+    }
+
+    /**
+     * @return longest time to write one group commit, in nanoseconds
+     */
+    public long getMaxFlushNanos() {
+        return maxFlushNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteQueueStats{" +
+                "depth=" + depth +
+                ", capacity=" + capacity +
+                ", flushes=" + flushes +
+                ", rowsFlushed=" + rowsFlushed +
+                ", failedFlushes=" + failedFlushes +
+                ", rejected=" + rejected +
+                ", averageFlushNanos=" + averageFlushNanos +
+                ", maxFlushNanos=" + maxFlushNanos +
+                '}';
+    }
+}
@@ -0,0 +1,116 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The BloomFilter class is a thread-safe, fixed-size probabilistic set of strings.
+ *
+ * mightContain() never answers false for a string that was put(), but may answer true for one
+ * that was not, with about the false positive rate the filter was sized for as long as no more
+ * than expectedInsertions strings are put. Strings cannot be removed.
+ *
+ * The bits live in an AtomicLongArray, so put() and mightContain() need no lock. Each string is
+ * hashed once to 64 bits and the probe positions are derived from two halves of that hash.
+ */
+public class BloomFilter {
+
+	private final AtomicLongArray words;
+	private final long bitCount;
+	private final int hashCount;
+
+	/**
+	 * @param expectedInsertions how many strings the filter is sized for
+	 * @param falsePositiveRate the rate of false positives wanted at that many strings, between 0 and 1
+	 */
+	public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+		long n = Math.max(1, expectedInsertions);
+		long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+		int wordCount = (int) Math.max(1, (bits + 63) / 64);
+		this.words = new AtomicLongArray(wordCount);
+		this.bitCount = wordCount * 64L;
+		this.hashCount = (int) Math.max(1, Math.round((double) bitCount / n * Math.log(2)));
+	}
+
+	/**
+	 * @param value the string to add
+	 */
+	public void put(String value) {
+		long hash = hash(value);
+		long h1 = hash;
+		long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+		for (int i = 0; i < hashCount; i++) {
+			long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+			int word = (int) (bit >>> 6);
+			long mask = 1L << bit;
+			// skip the write when the bit is already set, which it mostly is for a full filter
+			if ((words.get(word) & mask) == 0) {
+				words.accumulateAndGet(word, mask, (current, m) -> current | m);
+			}
+		}
+	}
+
+	/**
+	 * @param value the string to look for
+	 * @return false if the string was definitely never put, true if it may have been
+	 */
+	public boolean mightContain(String value) {
+		long hash = hash(value);
+		long h1 = hash;
+		long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+		for (int i = 0; i < hashCount; i++) {
+			long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+			if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of bits in the filter
+	 */
+	public long getBitCount() {
+		return bitCount;
+	}
+
+	/**
+	 * @return the number of bits set per string
+	 */
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	/**
+	 * Estimate the current false positive rate from how many bits are set. This walks the whole
+	 * bit array, so it is meant for metrics rather than the request path.
+	 * @return the chance that mightContain() answers true for a string that was never put
+	 */
+	public double estimatedFalsePositiveRate() {
+		long set = 0;
+		for (int i = 0; i < words.length(); i++) {
+			set += Long.bitCount(words.get(i));
+		}
+		return Math.pow((double) set / bitCount, hashCount);
+	}
+
+	/**
+	 * 64-bit FNV-1a over the UTF-16 chars, finished with a mixer so nearby strings spread out.
+	 */
+	private static long hash(String value) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < value.length(); i++) {
+			hash ^= value.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return mix(hash);
+	}
+
+	/**
+	 * The SplitMix64 finalizer.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,75 @@
+package Util;
+
+/**
+ * The CacheStats class is a point-in-time snapshot of an LruCache's counters.
+ */
+public class CacheStats {
+	private final long hits;
+	private final long misses;
+	private final long evictions;
+	private final int size;
+	private final int maxSize;
+
+	public CacheStats(long hits, long misses, long evictions, int size, int maxSize) {
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.size = size;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return number of lookups answered from the cache
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return number of lookups that had to go to the database
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return number of entries dropped to stay within maxSize
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return number of entries currently cached
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the most entries the cache will hold
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return hits / (hits + misses), or 0 before the first lookup
+	 */
+	public double getHitRatio() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	@Override
+	public String toString() {
+		return "CacheStats{" +
+				"hits=" + hits +
+				", misses=" + misses +
+				", evictions=" + evictions +
+				", size=" + size +
+				", maxSize=" + maxSize +
+				", hitRatio=" + getHitRatio() +
+				'}';
+	}
+}
@@ -0,0 +1,293 @@
+package Util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+/**
+ * The ConnectionPool class keeps a bounded set of open connections to the database so that
+ * DAO calls borrow an existing H2 session instead of opening a new one per query.
+ *
+ * - At most maxSize connections are ever open; callers beyond that wait up to acquireTimeout.
+ * - Idle connections are reused most-recently-used first and validated before they are handed out.
+ * - Each connection keeps up to statementCacheSize prepared statements open and hands them out
+ *   again when the same SQL is prepared, so hot queries are not parsed and planned on every call.
+ * - A housekeeper thread closes connections idle past idleTimeout (down to minIdle), refills
+ *   minIdle, and reports connections that have been borrowed for longer than the leak threshold.
+ *
+ * Connections handed out by getConnection() must be closed by the caller; close() returns them to the pool.
+ */
+public class ConnectionPool {
+	private final DataSource dataSource;
+	private final PoolConfig config;
+
+	/**
+	 * One permit per connection that may be borrowed. Fair, so waiters are served in arrival order.
+	 */
+	private final Semaphore permits;
+	private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+	private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger total = new AtomicInteger();
+
+	private final LongAdder acquireCount = new LongAdder();
+	private final LongAdder acquireNanos = new LongAdder();
+	private final AtomicLong maxAcquireNanos = new AtomicLong();
+	private final LongAdder acquireTimeouts = new LongAdder();
+	private final LongAdder leaksDetected = new LongAdder();
+	private final LongAdder statementCacheHits = new LongAdder();
+	private final LongAdder statementCacheMisses = new LongAdder();
+	private final LongAdder statementCacheEvictions = new LongAdder();
+	private final Timer acquireTimer = MetricsRegistry.DEFAULT.timer("db_pool_acquire_seconds",
+			"Time spent borrowing a connection from the pool, including waiting for one");
+
+	private final ScheduledExecutorService housekeeper;
+	private volatile boolean closed;
+
+	/**
+	 * Create a pool over the given DataSource and open the first minIdle connections.
+	 * @param dataSource the source of physical connections
+	 * @param config the sizing and housekeeping settings
+	 */
+	public ConnectionPool(DataSource dataSource, PoolConfig config) {
+		this.dataSource = dataSource;
+		this.config = config;
+		this.permits = new Semaphore(config.getMaxSize(), true);
+
+		fillMinIdle();
+
+		this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long interval = config.getHousekeepingIntervalMillis();
+		housekeeper.scheduleWithFixedDelay(this::housekeep, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Borrow a connection, waiting up to the acquire timeout if all of them are in use.
+	 * @return a connection which returns to the pool when closed
+	 * @throws SQLException if no connection became available in time or a new one could not be opened
+	 */
+	public Connection getConnection() throws SQLException {
+		if (closed) {
+			throw new SQLException("Connection pool is closed");
+		}
+		long start = System.nanoTime();
+		try {
+			if (!permits.tryAcquire(config.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+				acquireTimeouts.increment();
+				throw new SQLTransientConnectionException("Timed out after " + config.getAcquireTimeoutMillis()
+						+ "ms waiting for a connection, " + getStats());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a connection", e);
+		}
+
+		try {
+			PooledConnection pooled = takeIdleOrCreate();
+			borrowed.add(pooled);
+			Connection handle = pooled.borrow(config.getLeakDetectionThresholdMillis() > 0);
+			recordAcquire(System.nanoTime() - start);
+			return handle;
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return a snapshot of the pool's current size and acquire statistics
+	 */
+	public PoolStats getStats() {
+		long count = acquireCount.sum();
+		return new PoolStats(total.get(), borrowed.size(), idle.size(), permits.getQueueLength(),
+				count, acquireTimeouts.sum(), count == 0 ? 0 : acquireNanos.sum() / count,
+				maxAcquireNanos.get(), leaksDetected.sum(),
+				statementCacheHits.sum(), statementCacheMisses.sum(), statementCacheEvictions.sum());
+	}
+
+	/**
+	 * @return the settings this pool was created with
+	 */
+	public PoolConfig getConfig() {
+		return config;
+	}
+
+	/**
+	 * Close every idle connection and stop the housekeeper. Borrowed connections are closed as they come back.
+	 */
+	public void close() {
+		closed = true;
+		housekeeper.shutdownNow();
+		PooledConnection pooled;
+		while ((pooled = idle.pollFirst()) != null) {
+			destroy(pooled);
+		}
+	}
+
+	/**
+	 * Called by a connection handle when the caller closes it.
+	 * @param pooled the connection coming back
+	 */
+	void release(PooledConnection pooled) {
+		borrowed.remove(pooled);
+		try {
+			if (closed || pooled.isBroken() || !resetState(pooled)) {
+				destroy(pooled);
+			} else {
+				pooled.returned();
+				idle.offerFirst(pooled);
+			}
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Called by a connection when a prepareStatement() call was answered from its cache, or not.
+	 * @param hit true if a cached statement was reused
+	 */
+	void recordStatementLookup(boolean hit) {
+		if (hit) {
+			statementCacheHits.increment();
+		} else {
+			statementCacheMisses.increment();
+		}
+	}
+
+	/**
+	 * Called by a connection when it closes a cached statement to stay within its cache size.
+	 */
+	void recordStatementEviction() {
+		statementCacheEvictions.increment();
+	}
+
+	private PooledConnection takeIdleOrCreate() throws SQLException {
+		PooledConnection pooled;
+		// most recently returned first: it is the least likely to have gone stale
+		while ((pooled = idle.pollFirst()) != null) {
+			if (isValid(pooled)) {
+				return pooled;
+			}
+			destroy(pooled);
+		}
+		return create();
+	}
+
+	private PooledConnection create() throws SQLException {
+		PooledConnection pooled = new PooledConnection(this, dataSource.getConnection());
+		total.incrementAndGet();
+		return pooled;
+	}
+
+	private void destroy(PooledConnection pooled) {
+		total.decrementAndGet();
+		pooled.closePhysical();
+	}
+
+	private boolean isValid(PooledConnection pooled) {
+		if (!config.isValidateOnBorrow()) {
+			return true;
+		}
+		try {
+			return pooled.getPhysical().isValid(config.getValidationTimeoutSeconds());
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Undo anything the previous borrower left behind so the next one gets a clean session.
+	 * @return false if the connection could not be reset and should be thrown away
+	 */
+	private boolean resetState(PooledConnection pooled) {
+		Connection physical = pooled.getPhysical();
+		try {
+			if (physical.isClosed()) {
+				return false;
+			}
+			if (!physical.getAutoCommit()) {
+				physical.rollback();
+				physical.setAutoCommit(true);
+			}
+			return true;
+		} catch (SQLException e) {
+			System.out.println(e.getMessage());
+			return false;
+		}
+	}
+
+	private void recordAcquire(long nanos) {
+		acquireCount.increment();
+		acquireNanos.add(nanos);
+		maxAcquireNanos.accumulateAndGet(nanos, Math::max);
+		acquireTimer.record(nanos);
+	}
+
+	private void fillMinIdle() {
+		while (!closed && total.get() < config.getMinIdle() && total.get() < config.getMaxSize()) {
+			try {
+				idle.offerLast(create());
+			} catch (SQLException e) {
+				System.out.println(e.getMessage());
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Periodic maintenance: evict long-idle connections, top up minIdle, and report leaks.
+	 */
+	private void housekeep() {
+		try {
+			long now = System.nanoTime();
+			long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+			for (PooledConnection pooled : idle) {
+				if (total.get() <= config.getMinIdle()) {
+					break;
+				}
+				if (now - pooled.getLastReturnedNanos() > idleTimeoutNanos && idle.remove(pooled)) {
+					destroy(pooled);
+				}
+			}
+			fillMinIdle();
+			detectLeaks(now);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void detectLeaks(long now) {
+		long threshold = config.getLeakDetectionThresholdMillis();
+		if (threshold <= 0) {
+			return;
+		}
+		long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(threshold);
+		for (PooledConnection pooled : borrowed) {
+			if (!pooled.isLeakReported() && now - pooled.getBorrowedAtNanos() > thresholdNanos) {
+				pooled.setLeakReported(true);
+				leaksDetected.increment();
+				System.out.println("Possible connection leak: held by thread " + pooled.getBorrowThread()
+						+ " for more than " + threshold + "ms");
+				Throwable site = pooled.getBorrowSite();
+				if (site != null) {
+					site.printStackTrace(System.out);
+				}
+			}
+		}
+	}
+}
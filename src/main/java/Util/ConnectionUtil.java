@@ -4,6 +4,7 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 import org.h2.jdbcx.JdbcDataSource;
 import org.h2.tools.RunScript;
@@ -13,15 +14,17 @@ import org.h2.tools.RunScript;
  * our database. This class utilizes the singleton design pattern. We will be
  * utilizing an in-memory called h2database for the sql demos.
  *
- * DO NOT CHANGE ANYTHING IN THIS CLASS
+ * Connections come from a bounded ConnectionPool, so every caller must close the
+ * connection it gets; closing returns it to the pool rather than ending the H2 session.
  */
 public class ConnectionUtil {
 
 	/**
 	 * url will represent our connection string. Since this is an in-memory db, we
-	 * will represent a file location to store the data
+	 * will represent a file location to store the data. Benchmarks point it
+	 * somewhere else with -Ddb.url so they never touch this database.
 	 */
-	private static String url = "jdbc:h2:./h2/db;";
+	private static String url = System.getProperty("db.url", "jdbc:h2:./h2/db;");
 	/**
 	 * Default username for connecting to h2
 	 */
@@ -32,21 +35,28 @@ public class ConnectionUtil {
 	private static String password = "sa";
 
 	/**
-	 * DataSource for pooling. Pooling enables the creation of multiple connections when connections are closed.
+	 * DataSource the pool opens its physical connections from. It does no pooling by itself.
 	 */
-	private static JdbcDataSource pool = new JdbcDataSource();
+	private static JdbcDataSource dataSource = new JdbcDataSource();
 
 	/**
-	 * static initialization block to establish credentials for DataSoure Pool
+	 * Bounded pool of open connections. See PoolConfig for the "db.pool.*" system properties that size it.
+	 */
+	private static ConnectionPool pool;
+
+	/**
+	 * static initialization block to establish credentials for the DataSource and start the pool
 	 */
 	static {
-		pool.setURL(url);
-		pool.setUser(username);
-		pool.setPassword(password);
+		dataSource.setURL(url);
+		dataSource.setUser(username);
+		dataSource.setPassword(password);
+		pool = new ConnectionPool(dataSource, PoolConfig.fromSystemProperties());
+		registerPoolGauges(MetricsRegistry.DEFAULT);
 	}
 
 	/**
-	 * @return an active connection to the database
+	 * @return an active connection to the database, which must be closed to return it to the pool
 	 */
 	public static Connection getConnection() {
 		try {
@@ -58,17 +68,104 @@ public class ConnectionUtil {
 		return null;
 	}
 
+	/**
+	 * Return a connection obtained from getConnection() to the pool.
+	 * @param conn the connection to release, may be null
+	 */
+	public static void release(Connection conn) {
+		if (conn == null) {
+			return;
+		}
+		try {
+			conn.close();
+		} catch (SQLException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * @return the current pool size, usage and acquire latency
+	 */
+	public static PoolStats getPoolStats() {
+		return pool.getStats();
+	}
+
+	/**
+	 * @return the settings the pool was created with
+	 */
+	public static PoolConfig getPoolConfig() {
+		return pool.getConfig();
+	}
+
+	/**
+	 * Publish the pool's size and usage as gauges, and its running totals as counters, read from
+	 * getPoolStats() on every scrape.
+	 * @param registry the registry to publish to
+	 */
+	private static void registerPoolGauges(MetricsRegistry registry) {
+		registry.gauge("db_pool_connections", "Physical connections open", () -> pool.getStats().getTotal());
+		registry.gauge("db_pool_active_connections", "Connections currently borrowed", () -> pool.getStats().getActive());
+		registry.gauge("db_pool_idle_connections", "Connections open and waiting to be borrowed", () -> pool.getStats().getIdle());
+		registry.gauge("db_pool_waiters", "Threads waiting to borrow a connection", () -> pool.getStats().getWaiters());
+		registry.functionCounter("db_pool_acquire_timeouts_total", "Borrows that gave up waiting since startup", () -> pool.getStats().getAcquireTimeouts());
+		registry.functionCounter("db_pool_leaks_detected_total", "Connections reported as borrowed past the leak threshold since startup", () -> pool.getStats().getLeaksDetected());
+		registry.functionCounter("db_pool_statement_cache_hits_total", "prepareStatement() calls answered from a connection's statement cache since startup", () -> pool.getStats().getStatementCacheHits());
+		registry.functionCounter("db_pool_statement_cache_misses_total", "prepareStatement() calls that prepared a new statement since startup", () -> pool.getStats().getStatementCacheMisses());
+		registry.functionCounter("db_pool_statement_cache_evictions_total", "Cached statements closed to stay within the cache size since startup", () -> pool.getStats().getStatementCacheEvictions());
+		registry.gauge("db_pool_statement_cache_hit_ratio", "Share of prepareStatement() calls answered from the statement cache", () -> pool.getStats().getStatementCacheHitRatio());
+	}
+
+	/**
+	 * Bring the database schema up to date by applying any pending migrations. Existing data is kept.
+	 * This should be called once when the application starts.
+	 * @throws IllegalStateException if no connection could be borrowed or a migration failed, so the
+	 * application never serves on a half-migrated schema
+	 */
+	public static void migrateDatabase() {
+		Connection conn = borrowOrFail("migrate the database");
+		try {
+			SchemaMigrator.migrate(conn);
+		} catch (SQLException e) {
+			throw new IllegalStateException("Database migration failed", e);
+		} finally {
+			release(conn);
+		}
+	}
+
 	/**
 	 * For the purpose of testing, we will need to drop and recreate our database
-	 * tables to keep it consistent across all tests. The method will read the sql
-	 * file in resources. This will be performed before every test.
+	 * tables to keep it consistent across all tests. Everything in the database is
+	 * dropped, the sql file in resources recreates the tables and their test data,
+	 * and then the schema migrations are applied on top so tests run against the
+	 * same indexes as the application. This will be performed before every test.
+	 * @throws IllegalStateException if the database could not be rebuilt, so tests never run
+	 * against a partly reset one
 	 */
 	public static void resetTestDatabase() {
-		try {
+		Connection conn = borrowOrFail("reset the test database");
+		try (Statement st = conn.createStatement()) {
+			st.execute("DROP ALL OBJECTS");
 			FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql");
-			RunScript.execute(getConnection(), sqlReader);
+			RunScript.execute(conn, sqlReader);
+			SchemaMigrator.migrate(conn);
 		} catch (SQLException | FileNotFoundException e) {
-			e.printStackTrace();
+			throw new IllegalStateException("Test database reset failed", e);
+		} finally {
+			release(conn);
+		}
+	}
+
+	/**
+	 * Borrow a connection for a setup step that can not go ahead without one.
+	 * @param purpose what the connection is for, used in the error message
+	 * @return a connection from the pool, never null
+	 * @throws IllegalStateException if the pool could not hand one out
+	 */
+	private static Connection borrowOrFail(String purpose) {
+		try {
+			return pool.getConnection();
+		} catch (SQLException e) {
+			throw new IllegalStateException("Could not get a connection to " + purpose, e);
 		}
 	}
 }
@@ -0,0 +1,37 @@
+package Util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Counter class is a monotonically increasing count, such as requests served or rows written.
+ * Incrementing is a LongAdder update, so it neither locks nor allocates.
+ */
+public class Counter extends Metric {
+	private final LongAdder count = new LongAdder();
+
+	/**
+	 * Add one to the count.
+	 */
+	public void increment() {
+		count.increment();
+	}
+
+	/**
+	 * @param amount how much to add to the count
+	 */
+	public void increment(long amount) {
+		count.add(amount);
+	}
+
+	/**
+	 * @return the count so far
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	@Override
+	void writeSamples(StringBuilder out, String name, String labels) {
+		writeSample(out, name, labels, null, Long.toString(count.sum()));
+	}
+}
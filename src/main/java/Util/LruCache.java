@@ -0,0 +1,97 @@
+package Util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The LruCache class is a thread-safe, size-bounded map that evicts the least recently used
+ * entry once it is full, and counts hits, misses and evictions so the hit ratio can be watched.
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class LruCache<K, V> {
+	private final int maxSize;
+	private final LinkedHashMap<K, V> entries;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param maxSize the most entries to keep before evicting the least recently used one
+	 */
+	public LruCache(int maxSize) {
+		this.maxSize = maxSize;
+		// access order, so every get() moves the entry to the most recently used end
+		this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				if (size() > LruCache.this.maxSize) {
+					evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Look up a key and count the hit or miss.
+	 * @param key the key to look up
+	 * @return the cached value, or null if the key is not cached
+	 */
+	public V get(K key) {
+		V value;
+		synchronized (entries) {
+			value = entries.get(key);
+		}
+		if (value == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+		return value;
+	}
+
+	/**
+	 * Add or replace an entry, evicting the least recently used one if the cache is full.
+	 * @param key the key to cache under
+	 * @param value the value to cache, not null
+	 */
+	public void put(K key, V value) {
+		synchronized (entries) {
+			entries.put(key, value);
+		}
+	}
+
+	/**
+	 * Remove an entry so the next lookup goes back to the source.
+	 * @param key the key to remove
+	 */
+	public void invalidate(K key) {
+		synchronized (entries) {
+			entries.remove(key);
+		}
+	}
+
+	/**
+	 * Remove every entry. The hit, miss and eviction counters are kept.
+	 */
+	public void invalidateAll() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * @return a snapshot of the cache's counters and size
+	 */
+	public CacheStats getStats() {
+		int size;
+		synchronized (entries) {
+			size = entries.size();
+		}
+		return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size, maxSize);
+	}
+}
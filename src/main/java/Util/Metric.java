@@ -0,0 +1,34 @@
+package Util;
+
+/**
+ * The Metric class is the base of the meters a MetricsRegistry holds. Each one knows how to write
+ * its current value as Prometheus text exposition lines.
+ */
+public abstract class Metric {
+
+	/**
+	 * Append this meter's sample lines.
+	 * @param out the exposition text being built
+	 * @param name the metric family name
+	 * @param labels the rendered label pairs without braces, e.g. route="GET /messages", or "" for none
+	 */
+	abstract void writeSamples(StringBuilder out, String name, String labels);
+
+	/**
+	 * Append one "name{labels} value" line.
+	 */
+	static void writeSample(StringBuilder out, String name, String labels, String extraLabel, String value) {
+		out.append(name);
+		if (!labels.isEmpty() || extraLabel != null) {
+			out.append('{').append(labels);
+			if (extraLabel != null) {
+				if (!labels.isEmpty()) {
+					out.append(',');
+				}
+				out.append(extraLabel);
+			}
+			out.append('}');
+		}
+		out.append(' ').append(value).append('\n');
+	}
+}
@@ -0,0 +1,149 @@
+package Util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+/**
+ * The MetricsRegistry class holds the application's timers, counters and gauges and renders them
+ * in the Prometheus text exposition format for the /metrics endpoint.
+ *
+ * Meters are identified by a family name plus label pairs. Asking for the same name and labels
+ * again returns the same meter, so callers resolve their meters once (in a field or when routes
+ * are registered) and only record on the hot path. Gauges and function counters are read when the
+ * registry is scraped; registering one again replaces its supplier. A count that only ever grows,
+ * such as cache hits kept by the cache itself, is a function counter rather than a gauge, so it is
+ * typed as a counter and rate() treats a drop as a restart.
+ *
+ * The application shares the DEFAULT registry, the same way it shares the ConnectionUtil pool.
+ */
+public class MetricsRegistry {
+
+	public static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+	private final Map<String, Family> families = new LinkedHashMap<>();
+
+	/**
+	 * @param name the family name, in seconds, e.g. http_server_requests_seconds
+	 * @param help a one-line description of the family
+	 * @param labels label name and value pairs, e.g. "route", "GET /messages"
+	 * @return the timer for that name and labels, created on first use
+	 */
+	public synchronized Timer timer(String name, String help, String... labels) {
+		Family family = family(name, help, "histogram");
+		String key = renderLabels(labels);
+		Metric metric = family.metrics.get(key);
+		if (metric == null) {
+			metric = new Timer();
+			family.metrics.put(key, metric);
+			Timer timer = (Timer) metric;
+			gauge(name + "_max", help + " (longest so far)", () -> timer.getMaxNanos() / 1e9, labels);
+		}
+		return (Timer) metric;
+	}
+
+	/**
+	 * @param name the family name, ending in _total
+	 * @param help a one-line description of the family
+	 * @param labels label name and value pairs
+	 * @return the counter for that name and labels, created on first use
+	 */
+	public synchronized Counter counter(String name, String help, String... labels) {
+		Family family = family(name, help, "counter");
+		return (Counter) family.metrics.computeIfAbsent(renderLabels(labels), key -> new Counter());
+	}
+
+	/**
+	 * Register a value that is read every time the registry is scraped, such as a pool or queue size.
+	 * @param name the family name
+	 * @param help a one-line description of the family
+	 * @param value reads the current value
+	 * @param labels label name and value pairs
+	 */
+	public synchronized void gauge(String name, String help, DoubleSupplier value, String... labels) {
+		family(name, help, "gauge").metrics.put(renderLabels(labels), new Gauge(value));
+	}
+
+	/**
+	 * Register a count kept elsewhere, such as a cache's hit count, that is read every time the
+	 * registry is scraped and exposed as a counter.
+	 * @param name the family name, ending in _total
+	 * @param help a one-line description of the family
+	 * @param value reads the current count, which must never decrease
+	 * @param labels label name and value pairs
+	 */
+	public synchronized void functionCounter(String name, String help, DoubleSupplier value, String... labels) {
+		family(name, help, "counter").metrics.put(renderLabels(labels), new Gauge(value));
+	}
+
+	/**
+	 * @return every meter in the Prometheus text exposition format, version 0.0.4
+	 */
+	public synchronized String scrape() {
+		StringBuilder out = new StringBuilder(8192);
+		for (Map.Entry<String, Family> entry : families.entrySet()) {
+			String name = entry.getKey();
+			Family family = entry.getValue();
+			out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+			out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+			for (Map.Entry<String, Metric> metric : family.metrics.entrySet()) {
+				metric.getValue().writeSamples(out, name, metric.getKey());
+			}
+		}
+		return out.toString();
+	}
+
+	private Family family(String name, String help, String type) {
+		Family family = families.computeIfAbsent(name, key -> new Family(help, type));
+		if (!family.type.equals(type)) {
+			throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+		}
+		return family;
+	}
+
+	private static String renderLabels(String... labels) {
+		if (labels.length % 2 != 0) {
+			throw new IllegalArgumentException("Labels must be given as name and value pairs");
+		}
+		StringBuilder rendered = new StringBuilder();
+		for (int i = 0; i < labels.length; i += 2) {
+			if (i > 0) {
+				rendered.append(',');
+			}
+			rendered.append(labels[i]).append("=\"")
+					.append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+					.append('"');
+		}
+		return rendered.toString();
+	}
+
+	/**
+	 * All meters sharing one name, keyed by their rendered labels.
+	 */
+	private static class Family {
+		final String help;
+		final String type;
+		final Map<String, Metric> metrics = new LinkedHashMap<>();
+
+		Family(String help, String type) {
+			this.help = help;
+			this.type = type;
+		}
+	}
+
+	/**
+	 * A value read on every scrape. Gauges and function counters only differ in their family's type.
+	 */
+	private static class Gauge extends Metric {
+		private final DoubleSupplier value;
+
+		Gauge(DoubleSupplier value) {
+			this.value = value;
+		}
+
+		@Override
+		void writeSamples(StringBuilder out, String name, String labels) {
+			writeSample(out, name, labels, null, Double.toString(value.getAsDouble()));
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package Util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * The PasswordHasher class turns passwords into salted PBKDF2-HMAC-SHA256 hashes and checks
+ * passwords against them.
+ *
+ * A stored hash looks like "pbkdf2-sha256$<iterations>$<salt>$<hash>" with a random 16 byte salt
+ * and a 32 byte hash, both Base64. The iteration count is the cost: every hash and every check
+ * takes time proportional to it. It is kept in the stored value, so the cost can be raised later
+ * and older hashes still verify; needsRehash() tells when a stored value should be replaced.
+ *
+ * Rows written before hashing was introduced hold the plain password. verify() still accepts
+ * those, and needsRehash() reports them so they are upgraded on the next successful login.
+ */
+public class PasswordHasher {
+
+	private static final String PREFIX = "pbkdf2-sha256$";
+	private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+	private static final int SALT_BYTES = 16;
+	private static final int HASH_BITS = 256;
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private final int iterations;
+
+	/**
+	 * @param iterations the PBKDF2 iteration count new hashes are made with
+	 */
+	public PasswordHasher(int iterations) {
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Build a PasswordHasher with the iteration count set by -Dauth.pbkdf2.iterations, defaulting
+	 * to 600000 as recommended for PBKDF2-HMAC-SHA256.
+	 * @return the PasswordHasher to use for the application
+	 */
+	public static PasswordHasher fromSystemProperties() {
+		return new PasswordHasher(Integer.getInteger("auth.pbkdf2.iterations", 600_000));
+	}
+
+	/**
+	 * @return the iteration count new hashes are made with
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * @param password the password to hash
+	 * @return the value to store, with a new random salt
+	 */
+	public String hash(String password) {
+		byte[] salt = new byte[SALT_BYTES];
+		RANDOM.nextBytes(salt);
+		Base64.Encoder base64 = Base64.getEncoder();
+		return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$"
+				+ base64.encodeToString(pbkdf2(password, salt, iterations));
+	}
+
+	/**
+	 * Check a password against a stored value, in time that does not depend on where they differ.
+	 * @param password the password given by the user
+	 * @param stored the stored hash, or the plain password of a row that was never upgraded
+	 * @return true if the password matches
+	 */
+	public boolean verify(String password, String stored) {
+		if (password == null || stored == null) {
+			return false;
+		}
+		String[] parts = parse(stored);
+		if (parts == null) {
+			return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+		}
+		Base64.Decoder base64 = Base64.getDecoder();
+		byte[] expected = base64.decode(parts[2]);
+		byte[] actual = pbkdf2(password, base64.decode(parts[1]), Integer.parseInt(parts[0]));
+		return MessageDigest.isEqual(expected, actual);
+	}
+
+	/**
+	 * @param stored a stored value that verify() just accepted
+	 * @return true if it is a plain password or was hashed with a different iteration count
+	 */
+	public boolean needsRehash(String stored) {
+		String[] parts = parse(stored);
+		return parts == null || Integer.parseInt(parts[0]) != iterations;
+	}
+
+	/**
+	 * @return iterations, salt and hash of a stored hash, or null if the value is not one
+	 */
+	private static String[] parse(String stored) {
+		if (!stored.startsWith(PREFIX)) {
+			return null;
+		}
+		String[] parts = stored.substring(PREFIX.length()).split("\\$");
+		if (parts.length != 3 || parts[0].isEmpty() || !parts[0].chars().allMatch(Character::isDigit)) {
+			return null;
+		}
+		return parts;
+	}
+
+	private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+		PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+		try {
+			return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(ALGORITHM + " is not available", e);
+		} finally {
+			spec.clearPassword();
+		}
+	}
+}
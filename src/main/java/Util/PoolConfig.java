@@ -0,0 +1,153 @@
+package Util;
+
+/**
+ * The PoolConfig class holds the sizing and housekeeping settings of a ConnectionPool.
+ * Every setting can be overridden at startup with a "db.pool.*" system property,
+ * eg -Ddb.pool.maxSize=32, so the pool can be sized against the Javalin worker threads
+ * without rebuilding the application.
+ */
+public class PoolConfig {
+
+	/**
+	 * Number of idle connections the pool tries to keep open at all times.
+	 */
+	private int minIdle = 2;
+	/**
+	 * Maximum number of connections (idle + in use) the pool will ever open.
+	 */
+	private int maxSize = 16;
+	/**
+	 * How long getConnection() waits for a free connection before giving up.
+	 */
+	private long acquireTimeoutMillis = 30_000;
+	/**
+	 * How long a connection may sit idle before it is closed, as long as more than minIdle are open.
+	 */
+	private long idleTimeoutMillis = 600_000;
+	/**
+	 * Whether a connection is checked with Connection.isValid() before it is handed out.
+	 */
+	private boolean validateOnBorrow = true;
+	/**
+	 * Timeout passed to Connection.isValid() when validating on borrow.
+	 */
+	private int validationTimeoutSeconds = 1;
+	/**
+	 * A borrowed connection held longer than this is reported as a possible leak. 0 disables leak detection.
+	 */
+	private long leakDetectionThresholdMillis = 0;
+	/**
+	 * How often the housekeeper evicts idle connections, refills minIdle and looks for leaks.
+	 */
+	private long housekeepingIntervalMillis = 30_000;
+	/**
+	 * Most prepared statements each connection keeps open for reuse, least recently used evicted first. 0 disables the cache.
+	 */
+	private int statementCacheSize = 64;
+
+	/**
+	 * Build a PoolConfig from the defaults, overridden by any "db.pool.*" system property that is set.
+	 * @return the PoolConfig to use for the application pool
+	 */
+	public static PoolConfig fromSystemProperties() {
+		PoolConfig config = new PoolConfig();
+		config.setMinIdle(Integer.getInteger("db.pool.minIdle", config.getMinIdle()));
+		config.setMaxSize(Integer.getInteger("db.pool.maxSize", config.getMaxSize()));
+		config.setAcquireTimeoutMillis(Long.getLong("db.pool.acquireTimeoutMillis", config.getAcquireTimeoutMillis()));
+		config.setIdleTimeoutMillis(Long.getLong("db.pool.idleTimeoutMillis", config.getIdleTimeoutMillis()));
+		config.setValidateOnBorrow(Boolean.parseBoolean(
+				System.getProperty("db.pool.validateOnBorrow", String.valueOf(config.isValidateOnBorrow()))));
+		config.setValidationTimeoutSeconds(Integer.getInteger("db.pool.validationTimeoutSeconds", config.getValidationTimeoutSeconds()));
+		config.setLeakDetectionThresholdMillis(Long.getLong("db.pool.leakDetectionThresholdMillis", config.getLeakDetectionThresholdMillis()));
+		config.setHousekeepingIntervalMillis(Long.getLong("db.pool.housekeepingIntervalMillis", config.getHousekeepingIntervalMillis()));
+		config.setStatementCacheSize(Integer.getInteger("db.pool.statementCacheSize", config.getStatementCacheSize()));
+		return config;
+	}
+
+	public int getMinIdle() {
+		return minIdle;
+	}
+
+	public void setMinIdle(int minIdle) {
+		this.minIdle = minIdle;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public long getAcquireTimeoutMillis() {
+		return acquireTimeoutMillis;
+	}
+
+	public void setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+	}
+
+	public long getIdleTimeoutMillis() {
+		return idleTimeoutMillis;
+	}
+
+	public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+		this.idleTimeoutMillis = idleTimeoutMillis;
+	}
+
+	public boolean isValidateOnBorrow() {
+		return validateOnBorrow;
+	}
+
+	public void setValidateOnBorrow(boolean validateOnBorrow) {
+		this.validateOnBorrow = validateOnBorrow;
+	}
+
+	public int getValidationTimeoutSeconds() {
+		return validationTimeoutSeconds;
+	}
+
+	public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+		this.validationTimeoutSeconds = validationTimeoutSeconds;
+	}
+
+	public long getLeakDetectionThresholdMillis() {
+		return leakDetectionThresholdMillis;
+	}
+
+	public void setLeakDetectionThresholdMillis(long leakDetectionThresholdMillis) {
+		this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+	}
+
+	public long getHousekeepingIntervalMillis() {
+		return housekeepingIntervalMillis;
+	}
+
+	public void setHousekeepingIntervalMillis(long housekeepingIntervalMillis) {
+		this.housekeepingIntervalMillis = housekeepingIntervalMillis;
+	}
+
+	public int getStatementCacheSize() {
+		return statementCacheSize;
+	}
+
+	public void setStatementCacheSize(int statementCacheSize) {
+		this.statementCacheSize = statementCacheSize;
+	}
+
+	@Override
+	public String toString() {
+		return "PoolConfig{" +
+				"minIdle=" + minIdle +
+				", maxSize=" + maxSize +
+				", acquireTimeoutMillis=" + acquireTimeoutMillis +
+				", idleTimeoutMillis=" + idleTimeoutMillis +
+				", validateOnBorrow=" + validateOnBorrow +
+				", validationTimeoutSeconds=" + validationTimeoutSeconds +
+				", leakDetectionThresholdMillis=" + leakDetectionThresholdMillis +
+				", housekeepingIntervalMillis=" + housekeepingIntervalMillis +
+				", statementCacheSize=" + statementCacheSize +
+				'}';
+	}
+}
@@ -0,0 +1,147 @@
+package Util;
+
+/**
+ * The PoolStats class is a point-in-time snapshot of a ConnectionPool.
+ * Compare active + waiters against the Javalin worker thread count to size the pool.
+ */
+public class PoolStats {
+	private final int total;
+	private final int active;
+	private final int idle;
+	private final int waiters;
+	private final long acquireCount;
+	private final long acquireTimeouts;
+	private final long averageAcquireNanos;
+	private final long maxAcquireNanos;
+	private final long leaksDetected;
+	private final long statementCacheHits;
+	private final long statementCacheMisses;
+	private final long statementCacheEvictions;
+
+	public PoolStats(int total, int active, int idle, int waiters, long acquireCount, long acquireTimeouts,
+			long averageAcquireNanos, long maxAcquireNanos, long leaksDetected,
+			long statementCacheHits, long statementCacheMisses, long statementCacheEvictions) {
+		this.total = total;
+		this.active = active;
+		this.idle = idle;
+		this.waiters = waiters;
+		this.acquireCount = acquireCount;
+		this.acquireTimeouts = acquireTimeouts;
+		this.averageAcquireNanos = averageAcquireNanos;
+		this.maxAcquireNanos = maxAcquireNanos;
+		this.leaksDetected = leaksDetected;
+		this.statementCacheHits = statementCacheHits;
+		this.statementCacheMisses = statementCacheMisses;
+		this.statementCacheEvictions = statementCacheEvictions;
+	}
+
+	/**
+	 * @return number of physical connections currently open
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return number of connections currently borrowed
+	 */
+	public int getActive() {
+		return active;
+	}
+
+	/**
+	 * @return number of open connections waiting in the pool
+	 */
+	public int getIdle() {
+		return idle;
+	}
+
+	/**
+	 * @return number of threads blocked in getConnection()
+	 */
+	public int getWaiters() {
+		return waiters;
+	}
+
+	/**
+	 * @return number of successful getConnection() calls since the pool started
+	 */
+	public long getAcquireCount() {
+		return acquireCount;
+	}
+
+	/**
+	 * @return number of getConnection() calls that gave up after the acquire timeout
+	 */
+	public long getAcquireTimeouts() {
+		return acquireTimeouts;
+	}
+
+	/**
+	 * @return mean time spent in getConnection(), in nanoseconds
+	 */
+	public long getAverageAcquireNanos() {
+		return averageAcquireNanos;
+	}
+
+	/**
+	 * @return longest time spent in getConnection(), in nanoseconds
+	 */
+	public long getMaxAcquireNanos() {
+		return maxAcquireNanos;
+	}
+
+	/**
+	 * @return number of connections reported as held past the leak detection threshold
+	 */
+	public long getLeaksDetected() {
+		return leaksDetected;
+	}
+
+	/**
+	 * @return number of prepareStatement() calls answered with a statement from a connection's cache
+	 */
+	public long getStatementCacheHits() {
+		return statementCacheHits;
+	}
+
+	/**
+	 * @return number of prepareStatement() calls that had to prepare a new statement
+	 */
+	public long getStatementCacheMisses() {
+		return statementCacheMisses;
+	}
+
+	/**
+	 * @return number of cached statements closed to keep a connection's cache within its size
+	 */
+	public long getStatementCacheEvictions() {
+		return statementCacheEvictions;
+	}
+
+	/**
+	 * @return the share of prepareStatement() calls answered from the cache, or 0 before the first one
+	 */
+	public double getStatementCacheHitRatio() {
+		long lookups = statementCacheHits + statementCacheMisses;
+		return lookups == 0 ? 0 : (double) statementCacheHits / lookups;
+	}
+
+	@Override
+	public String toString() {
+		return "PoolStats{" +
+				"total=" + total +
+				", active=" + active +
+				", idle=" + idle +
+				", waiters=" + waiters +
+				", acquireCount=" + acquireCount +
+				", acquireTimeouts=" + acquireTimeouts +
+				", averageAcquireNanos=" + averageAcquireNanos +
+				", maxAcquireNanos=" + maxAcquireNanos +
+				", leaksDetected=" + leaksDetected +
+				", statementCacheHits=" + statementCacheHits +
+				", statementCacheMisses=" + statementCacheMisses +
+				", statementCacheEvictions=" + statementCacheEvictions +
+				'}';
+	}
+}
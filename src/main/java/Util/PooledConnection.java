@@ -0,0 +1,343 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The PooledConnection class wraps one physical connection owned by a ConnectionPool.
+ * Every borrow hands out a fresh proxy whose close() returns the physical connection
+ * to the pool instead of closing it, so callers keep using the plain JDBC contract.
+ *
+ * prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys) are answered from a small
+ * per-connection LRU cache of open statements keyed by their arguments. The statement handed out
+ * is a proxy too: its close() closes a ResultSet the caller left open, clears the parameters and
+ * puts the statement back in the cache.
+ * A cached statement is taken out of the cache while it is in use, so preparing the same SQL
+ * twice at once still gives two separate statements.
+ */
+class PooledConnection {
+	private final ConnectionPool pool;
+	private final Connection physical;
+
+	private volatile long lastReturnedNanos;
+	private volatile long borrowedAtNanos;
+	private volatile Throwable borrowSite;
+	private volatile String borrowThread;
+	private volatile boolean leakReported;
+	private volatile boolean broken;
+
+	private final int statementCacheSize;
+
+	/**
+	 * Open statements not currently in use, least recently used first. Only the thread that has
+	 * this connection borrowed touches it; handing the connection over through the pool makes the
+	 * previous borrower's changes visible to the next.
+	 */
+	private final LinkedHashMap<StatementKey, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+	PooledConnection(ConnectionPool pool, Connection physical) {
+		this.pool = pool;
+		this.physical = physical;
+		this.lastReturnedNanos = System.nanoTime();
+		this.statementCacheSize = pool.getConfig().getStatementCacheSize();
+	}
+
+	/**
+	 * Mark this connection as borrowed and create the handle given to the caller.
+	 * @param captureSite true to remember the borrowing stack trace for leak reports
+	 * @return a Connection proxy that returns this connection to the pool on close()
+	 */
+	Connection borrow(boolean captureSite) {
+		borrowedAtNanos = System.nanoTime();
+		borrowThread = Thread.currentThread().getName();
+		borrowSite = captureSite ? new Throwable("Connection borrowed here") : null;
+		leakReported = false;
+		Handle handle = new Handle();
+		handle.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, handle);
+		return handle.proxy;
+	}
+
+	/**
+	 * Record that this connection is back in the pool.
+	 */
+	void returned() {
+		borrowSite = null;
+		lastReturnedNanos = System.nanoTime();
+	}
+
+	Connection getPhysical() {
+		return physical;
+	}
+
+	long getLastReturnedNanos() {
+		return lastReturnedNanos;
+	}
+
+	long getBorrowedAtNanos() {
+		return borrowedAtNanos;
+	}
+
+	Throwable getBorrowSite() {
+		return borrowSite;
+	}
+
+	String getBorrowThread() {
+		return borrowThread;
+	}
+
+	boolean isLeakReported() {
+		return leakReported;
+	}
+
+	void setLeakReported(boolean leakReported) {
+		this.leakReported = leakReported;
+	}
+
+	boolean isBroken() {
+		return broken;
+	}
+
+	/**
+	 * Close the physical connection, ignoring errors since it is being thrown away.
+	 * Its cached statements are closed with it.
+	 */
+	void closePhysical() {
+		for (PreparedStatement statement : statements.values()) {
+			closeQuietly(statement);
+		}
+		statements.clear();
+		try {
+			physical.close();
+		} catch (SQLException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Take a statement for the given arguments out of the cache, or prepare a new one.
+	 * @param handle the connection handle the statement is prepared through
+	 * @param key the prepareStatement() arguments
+	 * @return a statement proxy whose close() returns the statement to the cache
+	 */
+	private PreparedStatement prepareCached(Handle handle, StatementKey key) throws SQLException {
+		PreparedStatement statement = statements.remove(key);
+		boolean hit = statement != null && !statement.isClosed();
+		pool.recordStatementLookup(hit);
+		if (!hit) {
+			statement = key.autoGeneratedKeys == null
+					? physical.prepareStatement(key.sql)
+					: physical.prepareStatement(key.sql, key.autoGeneratedKeys);
+		}
+		return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, new CachedStatement(handle, key, statement));
+	}
+
+	/**
+	 * Put a statement the caller has closed back in the cache, evicting the least recently used
+	 * one if the cache is full. The statement is closed instead if it can not be reused.
+	 * Closing a statement closes its ResultSet, so one the caller left open is closed here; it
+	 * would otherwise stay open, holding its rows, until the statement was next executed.
+	 */
+	private void recycle(Handle handle, StatementKey key, PreparedStatement statement) {
+		try {
+			if (handle.closed || broken || statement.isClosed()) {
+				// the connection went back to the pool first, and may already belong to another thread
+				statement.close();
+				return;
+			}
+			ResultSet open = statement.getResultSet();
+			if (open != null) {
+				open.close();
+			}
+			statement.clearParameters();
+			statement.clearBatch();
+			statement.clearWarnings();
+		} catch (SQLException e) {
+			closeQuietly(statement);
+			return;
+		}
+
+		PreparedStatement displaced = statements.put(key, statement);
+		if (displaced != null) {
+			closeQuietly(displaced);
+		}
+		if (statements.size() > statementCacheSize) {
+			Iterator<Map.Entry<StatementKey, PreparedStatement>> eldest = statements.entrySet().iterator();
+			closeQuietly(eldest.next().getValue());
+			eldest.remove();
+			pool.recordStatementEviction();
+		}
+	}
+
+	private static void closeQuietly(PreparedStatement statement) {
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * The per-borrow handle. Once closed it refuses further use, so a caller that keeps a stale
+	 * reference can never touch a connection that has since been handed to somebody else.
+	 */
+	private class Handle implements InvocationHandler {
+		private boolean closed;
+		private Connection proxy;
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "close":
+					if (!closed) {
+						closed = true;
+						pool.release(PooledConnection.this);
+					}
+					return null;
+				case "isClosed":
+					return closed || physical.isClosed();
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "PooledConnection[" + physical + (closed ? ", closed]" : "]");
+				case "prepareStatement":
+					StatementKey key = StatementKey.of(method, args);
+					if (!closed && statementCacheSize > 0 && key != null) {
+						return prepareCached(this, key);
+					}
+					break;
+				default:
+					break;
+			}
+			if (closed) {
+				throw new SQLException("Connection is closed");
+			}
+			try {
+				return method.invoke(physical, args);
+			} catch (InvocationTargetException e) {
+				throw failed(e);
+			}
+		}
+	}
+
+	/**
+	 * Unwrap a call on the physical connection or one of its statements that threw, and mark this
+	 * connection broken if the connection itself failed (SQLState class 08), so it is never handed
+	 * out again.
+	 * @param e the reflective call's failure
+	 * @return the exception the call threw, to rethrow as is
+	 */
+	private Throwable failed(InvocationTargetException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof SQLException) {
+			String state = ((SQLException) cause).getSQLState();
+			if (state != null && state.startsWith("08")) {
+				broken = true;
+			}
+		}
+		return cause;
+	}
+
+	/**
+	 * A borrowed cached statement. Once closed it refuses further use, like the connection handle.
+	 */
+	private class CachedStatement implements InvocationHandler {
+		private final Handle handle;
+		private final StatementKey key;
+		private final PreparedStatement statement;
+		private boolean closed;
+
+		CachedStatement(Handle handle, StatementKey key, PreparedStatement statement) {
+			this.handle = handle;
+			this.key = key;
+			this.statement = statement;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "close":
+					if (!closed) {
+						closed = true;
+						recycle(handle, key, statement);
+					}
+					return null;
+				case "isClosed":
+					return closed || statement.isClosed();
+				case "getConnection":
+					return handle.proxy;
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "CachedStatement[" + statement + (closed ? ", closed]" : "]");
+				default:
+					break;
+			}
+			if (closed) {
+				throw new SQLException("Statement is closed");
+			}
+			try {
+				return method.invoke(statement, args);
+			} catch (InvocationTargetException e) {
+				throw failed(e);
+			}
+		}
+	}
+
+	/**
+	 * The arguments of a cacheable prepareStatement() call.
+	 */
+	private static class StatementKey {
+		final String sql;
+		final Integer autoGeneratedKeys;
+
+		private StatementKey(String sql, Integer autoGeneratedKeys) {
+			this.sql = sql;
+			this.autoGeneratedKeys = autoGeneratedKeys;
+		}
+
+		/**
+		 * @return the key for prepareStatement(String) or prepareStatement(String, int), or null for
+		 *         the other overloads, which are passed straight through
+		 */
+		static StatementKey of(Method method, Object[] args) {
+			Class<?>[] types = method.getParameterTypes();
+			if (types.length == 1) {
+				return new StatementKey((String) args[0], null);
+			}
+			if (types.length == 2 && types[1] == int.class) {
+				return new StatementKey((String) args[0], (Integer) args[1]);
+			}
+			return null;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof StatementKey)) {
+				return false;
+			}
+			StatementKey other = (StatementKey) o;
+			return sql.equals(other.sql) && Objects.equals(autoGeneratedKeys, other.autoGeneratedKeys);
+		}
+
+		@Override
+		public int hashCode() {
+			return sql.hashCode() * 31 + Objects.hashCode(autoGeneratedKeys);
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package Util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.zip.CRC32;
+
+import org.h2.tools.RunScript;
+
+/**
+ * The SchemaMigrator class brings a database up to the latest schema version by running the
+ * versioned scripts in src/main/resources/db/migration that have not been applied yet.
+ *
+ * Applied versions are recorded in the schema_version table together with a checksum of the
+ * script, so each script runs exactly once per database and later edits to an applied script
+ * are reported. New migrations are added as the next "V<n>__<description>.sql" file and listed
+ * in MIGRATIONS; never edit a script that has already shipped.
+ */
+public class SchemaMigrator {
+
+	/**
+	 * Classpath folder holding the migration scripts.
+	 */
+	private static final String LOCATION = "db/migration/";
+
+	/**
+	 * Every migration in the order it must be applied.
+	 */
+	private static final String[] MIGRATIONS = {
+			"V1__create_account_and_message.sql",
+			"V2__add_message_indexes.sql",
+			"V3__index_timeline_by_message_id.sql",
+	};
+
+	/**
+	 * Apply every migration newer than the database's current version.
+	 * @param conn the connection to migrate through; it is not closed
+	 * @return the number of migrations applied
+	 * @throws SQLException if a migration fails; the versions applied before it stay recorded
+	 */
+	public static int migrate(Connection conn) throws SQLException {
+		createVersionTable(conn);
+		int current = currentVersion(conn);
+		int applied = 0;
+
+		for (String migration : MIGRATIONS) {
+			int version = versionOf(migration);
+			String script = load(migration);
+			long checksum = checksum(script);
+
+			if (version <= current) {
+				verifyChecksum(conn, version, migration, checksum);
+				continue;
+			}
+
+			try (Reader reader = new StringReader(script)) {
+				RunScript.execute(conn, reader);
+			} catch (IOException e) {
+				throw new SQLException("Could not read migration " + migration, e);
+			}
+			recordVersion(conn, version, migration, checksum);
+			applied++;
+		}
+		return applied;
+	}
+
+	/**
+	 * @param conn the connection to read through
+	 * @return the highest applied version, or 0 for a database that has never been migrated
+	 * @throws SQLException if the version table can not be read
+	 */
+	public static int currentVersion(Connection conn) throws SQLException {
+		try (Statement st = conn.createStatement();
+				ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+
+	private static void createVersionTable(Connection conn) throws SQLException {
+		try (Statement st = conn.createStatement()) {
+			st.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+					+ "version int primary key, "
+					+ "script varchar(255), "
+					+ "checksum bigint, "
+					+ "installed_on timestamp default current_timestamp)");
+		}
+	}
+
+	private static void recordVersion(Connection conn, int version, String migration, long checksum) throws SQLException {
+		String sql = "INSERT INTO schema_version(version, script, checksum) VALUES (?, ?, ?)";
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			ps.setInt(1, version);
+			ps.setString(2, migration);
+			ps.setLong(3, checksum);
+			ps.executeUpdate();
+		}
+	}
+
+	private static void verifyChecksum(Connection conn, int version, String migration, long checksum) throws SQLException {
+		String sql = "SELECT checksum FROM schema_version WHERE version = ?";
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			ps.setInt(1, version);
+			try (ResultSet rs = ps.executeQuery()) {
+				if (rs.next() && rs.getLong(1) != checksum) {
+					System.out.println("Migration " + migration + " was changed after it was applied");
+				}
+			}
+		}
+	}
+
+	private static int versionOf(String migration) {
+		return Integer.parseInt(migration.substring(1, migration.indexOf("__")));
+	}
+
+	private static String load(String migration) throws SQLException {
+		try (InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(LOCATION + migration)) {
+			if (in == null) {
+				throw new SQLException("Migration " + migration + " not found on the classpath");
+			}
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new SQLException("Could not read migration " + migration, e);
+		}
+	}
+
+	private static long checksum(String script) {
+		CRC32 crc = new CRC32();
+		crc.update(script.getBytes(StandardCharsets.UTF_8));
+		return crc.getValue();
+	}
+}
@@ -0,0 +1,113 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Timer class records how long an operation takes as a fixed-bucket latency histogram,
+ * exposed in Prometheus as name_bucket, name_sum and name_count in seconds.
+ *
+ * Recording only updates LongAdders and a max, so it neither locks nor allocates and is safe to
+ * call on every request. Resolve the Timer once from the MetricsRegistry and keep it in a field;
+ * the lookup is what costs, not the recording.
+ */
+public class Timer extends Metric {
+
+	/**
+	 * Upper bounds of the buckets, in nanoseconds, from 100 microseconds to 10 seconds.
+	 */
+	private static final long[] BUCKET_NANOS = {
+			100_000L, 250_000L, 500_000L,
+			1_000_000L, 2_500_000L, 5_000_000L,
+			10_000_000L, 25_000_000L, 50_000_000L,
+			100_000_000L, 250_000_000L, 500_000_000L,
+			1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L,
+	};
+
+	/**
+	 * The "le" label of each bucket, in seconds, rendered once.
+	 */
+	private static final String[] BUCKET_LABELS = new String[BUCKET_NANOS.length];
+
+	static {
+		for (int i = 0; i < BUCKET_NANOS.length; i++) {
+			BUCKET_LABELS[i] = "le=\"" + BUCKET_NANOS[i] / 1e9 + "\"";
+		}
+	}
+
+	/**
+	 * Samples per bucket, not cumulative; the last slot holds samples above every bound.
+	 */
+	private final LongAdder[] buckets = new LongAdder[BUCKET_NANOS.length + 1];
+	private final LongAdder totalNanos = new LongAdder();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	Timer() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Record one operation.
+	 * @param nanos how long it took, in nanoseconds
+	 */
+	public void record(long nanos) {
+		int bucket = 0;
+		while (bucket < BUCKET_NANOS.length && nanos > BUCKET_NANOS[bucket]) {
+			bucket++;
+		}
+		buckets[bucket].increment();
+		totalNanos.add(nanos);
+		if (nanos > maxNanos.get()) {
+			maxNanos.accumulateAndGet(nanos, Math::max);
+		}
+	}
+
+	/**
+	 * Record one operation that started at the given System.nanoTime() and ends now.
+	 * @param startNanos the System.nanoTime() taken when the operation started
+	 */
+	public void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * @return how many operations have been recorded
+	 */
+	public long getCount() {
+		long count = 0;
+		for (LongAdder bucket : buckets) {
+			count += bucket.sum();
+		}
+		return count;
+	}
+
+	/**
+	 * @return the total time recorded, in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	/**
+	 * @return the longest operation recorded, in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	@Override
+	void writeSamples(StringBuilder out, String name, String labels) {
+		String bucketName = name + "_bucket";
+		long cumulative = 0;
+		for (int i = 0; i < BUCKET_NANOS.length; i++) {
+			cumulative += buckets[i].sum();
+			writeSample(out, bucketName, labels, BUCKET_LABELS[i], Long.toString(cumulative));
+		}
+		cumulative += buckets[BUCKET_NANOS.length].sum();
+		writeSample(out, bucketName, labels, "le=\"+Inf\"", Long.toString(cumulative));
+		writeSample(out, name + "_sum", labels, null, Double.toString(totalNanos.sum() / 1e9));
+		writeSample(out, name + "_count", labels, null, Long.toString(cumulative));
+	}
+}
@@ -0,0 +1,111 @@
+package Util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The TokenSigner class issues and checks stateless session tokens.
+ *
+ * A token looks like "<account_id>.<expiry>.<signature>", where expiry is in epoch seconds and the
+ * signature is an HMAC-SHA256 of the first two parts, Base64url without padding. Checking a token
+ * needs only the key, so it costs one HMAC and no database access.
+ *
+ * The key is set with -Dauth.token.secret (Base64). Without it a random key is made at startup,
+ * so tokens stop being accepted when the application restarts.
+ */
+public class TokenSigner {
+
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+
+	private final SecretKeySpec key;
+	private final long ttlSeconds;
+
+	/**
+	 * Mac instances are not thread-safe, so each thread keeps its own.
+	 */
+	private final ThreadLocal<Mac> macs;
+
+	/**
+	 * @param secret the HMAC key
+	 * @param ttlSeconds how long an issued token is accepted
+	 */
+	public TokenSigner(byte[] secret, long ttlSeconds) {
+		this.key = new SecretKeySpec(secret, MAC_ALGORITHM);
+		this.ttlSeconds = ttlSeconds;
+		this.macs = ThreadLocal.withInitial(this::newMac);
+	}
+
+	/**
+	 * Build a TokenSigner from -Dauth.token.secret and -Dauth.token.ttlSeconds (default 3600).
+	 * @return the TokenSigner to use for the application
+	 */
+	public static TokenSigner fromSystemProperties() {
+		String secret = System.getProperty("auth.token.secret");
+		byte[] key;
+		if (secret != null) {
+			key = Base64.getDecoder().decode(secret);
+		} else {
+			key = new byte[32];
+			new SecureRandom().nextBytes(key);
+		}
+		return new TokenSigner(key, Long.getLong("auth.token.ttlSeconds", 3600));
+	}
+
+	/**
+	 * @param account_id the account the token identifies
+	 * @return a signed token that expires ttlSeconds from now
+	 */
+	public String issue(int account_id) {
+		String payload = account_id + "." + (System.currentTimeMillis() / 1000 + ttlSeconds);
+		return payload + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(sign(payload));
+	}
+
+	/**
+	 * Check a token's signature and expiry, in time that does not depend on where a forged
+	 * signature differs.
+	 * @param token the token given by the client
+	 * @return the account_id the token was issued for, or null if it is malformed, forged or expired
+	 */
+	public Integer verify(String token) {
+		int signatureStart = token.lastIndexOf('.');
+		int expiryStart = token.lastIndexOf('.', signatureStart - 1);
+		if (expiryStart <= 0) {
+			return null;
+		}
+		String payload = token.substring(0, signatureStart);
+		byte[] signature;
+		int account_id;
+		long expiry;
+		try {
+			signature = Base64.getUrlDecoder().decode(token.substring(signatureStart + 1));
+			account_id = Integer.parseInt(token.substring(0, expiryStart));
+			expiry = Long.parseLong(token.substring(expiryStart + 1, signatureStart));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+		if (!MessageDigest.isEqual(sign(payload), signature) || expiry <= System.currentTimeMillis() / 1000) {
+			return null;
+		}
+		return account_id;
+	}
+
+	private byte[] sign(String payload) {
+		return macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private Mac newMac() {
+		try {
+			Mac mac = Mac.getInstance(MAC_ALGORITHM);
+			mac.init(key);
+			return mac;
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(MAC_ALGORITHM + " is not available", e);
+		}
+	}
+}
@@ -0,0 +1,4 @@
+-- Per-user timeline lookups: WHERE posted_by = ? [ORDER BY time_posted_epoch DESC].
+create index if not exists message_posted_by_time_idx on message (posted_by, time_posted_epoch desc);
+-- Global ordering and range scans by post time.
+create index if not exists message_time_posted_idx on message (time_posted_epoch);
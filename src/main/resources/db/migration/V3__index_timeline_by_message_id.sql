@@ -0,0 +1,7 @@
+-- Per-user timelines: WHERE posted_by = ? [AND message_id > ?] ORDER BY message_id [LIMIT ?].
+-- With (posted_by, message_id) a keyset page seeks straight to the cursor instead of reading
+-- every earlier post of the user; the full timeline is already served by the posted_by foreign key index.
+create index if not exists message_posted_by_id_idx on message (posted_by, message_id);
+-- The V2 indexes are keyed on time_posted_epoch, which no query filters or sorts on.
+drop index if exists message_posted_by_time_idx;
+drop index if exists message_time_posted_idx;
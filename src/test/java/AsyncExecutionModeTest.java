@@ -0,0 +1,135 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Account;
+import Model.Message;
+import Service.DbExecutor;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class AsyncExecutionModeTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database and start the Javalin app in "async" execution mode.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        System.setProperty("api.executionMode", "async");
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+        System.clearProperty("api.executionMode");
+    }
+
+    /**
+     * Register, log in, post a message and read it back through the async handlers.
+     *
+     * Expected Response:
+     *  Status Code: 200 for every request, with the same bodies as the blocking handlers
+     */
+    @Test
+    public void asyncHandlersAnswerLikeBlockingOnes() throws IOException, InterruptedException {
+        String credentials = "{\"username\": \"async_user\", \"password\": \"password\"}";
+        HttpResponse<String> register = send(HttpRequest.newBuilder(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString(credentials)));
+        Assert.assertEquals(200, register.statusCode());
+        Assert.assertEquals(new Account(2, "async_user", "password"), objectMapper.readValue(register.body(), Account.class));
+
+        HttpResponse<String> login = send(HttpRequest.newBuilder(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString(credentials)));
+        Assert.assertEquals(200, login.statusCode());
+
+        HttpResponse<String> post = send(HttpRequest.newBuilder(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"posted_by\": 2, \"message_text\": \"async\", \"time_posted_epoch\": 1669947792}")));
+        Assert.assertEquals(200, post.statusCode());
+        Assert.assertEquals(new Message(2, 2, "async", 1669947792), objectMapper.readValue(post.body(), Message.class));
+
+        HttpResponse<String> rejected = send(HttpRequest.newBuilder(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"posted_by\": 99, \"message_text\": \"async\", \"time_posted_epoch\": 1669947792}")));
+        Assert.assertEquals(400, rejected.statusCode());
+        Assert.assertEquals("", rejected.body());
+
+        HttpResponse<String> all = send(HttpRequest.newBuilder(URI.create("http://localhost:8080/messages")).GET());
+        Assert.assertEquals(200, all.statusCode());
+        List<Message> messages = objectMapper.readValue(all.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(2, messages.size());
+    }
+
+    /**
+     * Fill a DbExecutor with one thread and a queue of one, then submit another task.
+     *
+     * Expected Result:
+     *  The extra task fails at once with a RejectedExecutionException instead of waiting.
+     */
+    @Test
+    public void saturatedExecutorRejectsAtOnce() throws InterruptedException {
+        DbExecutor executor = new DbExecutor(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Void> running = executor.supply(() -> await(release));
+            CompletableFuture<Void> queued = executor.supply(() -> await(release));
+            CompletableFuture<Void> refused = executor.supply(() -> await(release));
+
+            Assert.assertTrue(refused.isCompletedExceptionally());
+            try {
+                refused.join();
+                Assert.fail("expected the task to be rejected");
+            } catch (CompletionException e) {
+                Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+
+            release.countDown();
+            running.join();
+            queued.join();
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return webClient.send(request.header("Content-Type", "application/json").build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static Void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+}
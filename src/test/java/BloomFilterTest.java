@@ -0,0 +1,70 @@
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import DAO.AccountDAO;
+import DAO.DataAccessException;
+import Model.Account;
+import Service.AccountService;
+import Util.BloomFilter;
+import Util.ConnectionUtil;
+import Util.PasswordHasher;
+
+public class BloomFilterTest {
+
+    /**
+     * Every string that was put is reported as possibly present.
+     */
+    @Test
+    public void noFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("user" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            Assert.assertTrue(filter.mightContain("user" + i));
+        }
+    }
+
+    /**
+     * At its expected size, the filter's false positive rate stays close to the one it was sized for.
+     */
+    @Test
+    public void falsePositiveRateNearTarget() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("user" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("missing" + i)) {
+                falsePositives++;
+            }
+        }
+        Assert.assertTrue("false positives: " + falsePositives, falsePositives < 2_000);
+        Assert.assertEquals(0.01, filter.estimatedFalsePositiveRate(), 0.005);
+    }
+
+    /**
+     * If the usernames can not be read when the AccountService starts, it runs without the filter
+     * instead of with an empty one, so existing users can still log in.
+     */
+    @Test
+    public void failedWarmUpDisablesTheFilter() {
+        ConnectionUtil.resetTestDatabase();
+        AccountDAO failingDAO = new AccountDAO() {
+            @Override
+            public int forEachUsername(Consumer<String> consumer) {
+                throw new DataAccessException(new SQLException("No database connection available"));
+            }
+        };
+        AccountService accountService = new AccountService(failingDAO, new PasswordHasher(1000));
+
+        Account loggedIn = accountService.getAccountByUsername(new Account("testuser1", "password"));
+        Assert.assertNotNull(loggedIn);
+        Assert.assertEquals(1, loggedIn.getAccount_id());
+        Assert.assertEquals(0, accountService.getUsernameFilterFalsePositiveRate(), 0);
+    }
+}
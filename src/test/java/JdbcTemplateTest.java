@@ -0,0 +1,51 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.DataAccessException;
+import DAO.JdbcTemplate;
+import DAO.StatementBinder;
+import Util.ConnectionUtil;
+
+public class JdbcTemplateTest {
+
+    JdbcTemplate jdbc;
+
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        jdbc = new JdbcTemplate();
+    }
+
+    /**
+     * A streamed query that fails after handing over some rows throws instead of returning as if
+     * the result had ended there.
+     */
+    @Test
+    public void queryForEachFailingMidStreamThrows() {
+        jdbc.update("INSERT INTO message(posted_by, message_text, time_posted_epoch) VALUES (1, 'second', 1669947793)", StatementBinder.NONE);
+        List<Integer> seen = new ArrayList<>();
+
+        Assert.assertThrows(DataAccessException.class, () -> jdbc.queryForEach(
+                "SELECT message_id FROM message ORDER BY message_id", StatementBinder.NONE, rs -> {
+                    if (rs.getInt(1) == 2) {
+                        throw new SQLException("row 2 could not be read");
+                    }
+                    return rs.getInt(1);
+                }, seen::add));
+        Assert.assertEquals(List.of(1), seen);
+    }
+
+    /**
+     * A streamed query the database rejects throws.
+     */
+    @Test
+    public void queryForEachInvalidQueryThrows() {
+        Assert.assertThrows(DataAccessException.class, () -> jdbc.queryForEach(
+                "SELECT message_id FROM no_such_table", StatementBinder.NONE, rs -> rs.getInt(1), id -> { }));
+    }
+}
@@ -0,0 +1,96 @@
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.DataAccessException;
+import DAO.MessageDAO;
+import Model.Message;
+import Service.MessageService;
+import Util.ConnectionUtil;
+import java.sql.SQLException;
+import java.util.concurrent.CompletionException;
+
+public class MessageCacheTest {
+
+    MessageService messageService;
+
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        messageService = new MessageService(new MessageDAO());
+    }
+
+    /**
+     * A second lookup of the same message is answered from the cache.
+     */
+    @Test
+    public void repeatedLookupIsCached() {
+        Message expected = new Message(1, 1, "test message 1", 1669947792);
+        Assert.assertEquals(expected, messageService.getMessagebyId(1));
+        long hits = messageService.getMessageCacheStats().getHits();
+
+        Assert.assertEquals(expected, messageService.getMessagebyId(1));
+        Assert.assertEquals(hits + 1, messageService.getMessageCacheStats().getHits());
+    }
+
+    /**
+     * A missing id is cached as missing until a message with that id is created.
+     */
+    @Test
+    public void missingIdIsCachedUntilCreated() {
+        Assert.assertNull(messageService.getMessagebyId(2));
+        Assert.assertNull(messageService.getMessagebyId(2));
+        Assert.assertEquals(1, messageService.getMessageCacheStats().getHits());
+
+        Message created = messageService.createNewMessage(new Message(1, "second message", 1669947793));
+        Assert.assertEquals(2, created.getMessage_id());
+        Assert.assertEquals(created, messageService.getMessagebyId(2));
+    }
+
+    /**
+     * Updates and deletes are visible to the next lookup of a cached message.
+     */
+    @Test
+    public void updateAndDeleteInvalidate() {
+        messageService.getMessagebyId(1);
+
+        messageService.updateMessageByMessageId(1, new Message(0, "updated message", 0));
+        Assert.assertEquals("updated message", messageService.getMessagebyId(1).getMessage_text());
+
+        messageService.deleteMessageByMessageId(1);
+        Assert.assertNull(messageService.getMessagebyId(1));
+    }
+
+    /**
+     * A lookup that fails is not cached as missing: once the database is back the message is found.
+     */
+    @Test
+    public void failedLookupIsNotCached() {
+        FailingMessageDAO messageDAO = new FailingMessageDAO();
+        messageService = new MessageService(messageDAO);
+
+        messageDAO.failing = true;
+        Assert.assertThrows(DataAccessException.class, () -> messageService.getMessagebyId(1));
+        CompletionException failure = Assert.assertThrows(CompletionException.class, () -> messageService.getMessagebyIdAsync(1).join());
+        Assert.assertTrue(failure.getCause() instanceof DataAccessException);
+        Assert.assertEquals(0, messageService.getMessageCacheStats().getSize());
+
+        messageDAO.failing = false;
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792), messageService.getMessagebyId(1));
+    }
+
+    /**
+     * A MessageDAO whose lookups fail the way they do when no pooled connection becomes available.
+     */
+    private static class FailingMessageDAO extends MessageDAO {
+        volatile boolean failing;
+
+        @Override
+        public Message findMessageByMessageId(int message_id) {
+            if (failing) {
+                throw new DataAccessException(new SQLException("No database connection available"));
+            }
+            return super.findMessageByMessageId(message_id);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class MetricsEndpointTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending GET localhost:8080/metrics after GET localhost:8080/messages/1
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: Prometheus text with the route timer, the DAO method timer and the pool gauges
+     */
+    @Test
+    public void metricsCoverRoutesDaoAndPool() throws IOException, InterruptedException {
+        HttpRequest getMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build();
+        webClient.send(getMessageRequest, HttpResponse.BodyHandlers.ofString());
+
+        HttpRequest metricsRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/metrics"))
+                .build();
+        HttpResponse<String> response = webClient.send(metricsRequest, HttpResponse.BodyHandlers.ofString());
+        String body = response.body();
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+        Assert.assertTrue(body.contains("# TYPE http_server_requests_seconds histogram"));
+        Assert.assertTrue(body.contains("http_server_requests_seconds_count{route=\"GET /messages/{message_id}\"}"));
+        Assert.assertTrue(body.contains("db_query_seconds_count{dao=\"MessageDAO\",method=\"findMessageByMessageId\"}"));
+        Assert.assertTrue(body.contains("db_pool_acquire_seconds_bucket{le=\"+Inf\"}"));
+        Assert.assertTrue(body.contains("db_pool_active_connections"));
+        Assert.assertTrue(body.contains("# TYPE cache_hits_total counter"));
+        Assert.assertTrue(body.contains("cache_hits_total{cache=\"accounts\"}"));
+        Assert.assertTrue(body.contains("# TYPE db_pool_statement_cache_hits_total counter"));
+        Assert.assertFalse(body.contains("# TYPE cache_hits gauge"));
+    }
+}
@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Model.MessagePage;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class PaginateMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web. Then post four more messages, so messages 1 to 5 exist for user 1.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+
+        for (int i = 2; i <= 5; i++) {
+            HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{"+
+                            "\"posted_by\":1, " +
+                            "\"message_text\": \"test message " + i + "\", " +
+                            "\"time_posted_epoch\": 1669947792}"))
+                    .header("Content-Type", "application/json")
+                    .build();
+            webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Following next_cursor through GET localhost:8080/messages?limit=2
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: pages [1, 2], [3, 4], [5] with next_cursor 2, 4 and null
+     */
+    @Test
+    public void getAllMessagesPaginated() throws IOException, InterruptedException {
+        MessagePage first = getPage("http://localhost:8080/messages?limit=2");
+        Assert.assertEquals(expectedMessages(1, 2), first.getMessages());
+        Assert.assertEquals(Integer.valueOf(2), first.getNext_cursor());
+
+        MessagePage second = getPage("http://localhost:8080/messages?limit=2&after=" + first.getNext_cursor());
+        Assert.assertEquals(expectedMessages(3, 4), second.getMessages());
+        Assert.assertEquals(Integer.valueOf(4), second.getNext_cursor());
+
+        MessagePage last = getPage("http://localhost:8080/messages?limit=2&after=" + second.getNext_cursor());
+        Assert.assertEquals(expectedMessages(5, 5), last.getMessages());
+        Assert.assertNull(last.getNext_cursor());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages?after=3
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: messages 4 and 5, with a null next_cursor
+     */
+    @Test
+    public void getAllMessagesFromUserPaginated() throws IOException, InterruptedException {
+        MessagePage page = getPage("http://localhost:8080/accounts/1/messages?after=3");
+        Assert.assertEquals(expectedMessages(4, 5), page.getMessages());
+        Assert.assertNull(page.getNext_cursor());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?limit=0
+     *
+     * Expected Response:
+     *  Status Code: 400
+     *  Response Body:
+     */
+    @Test
+    public void getAllMessagesInvalidLimit() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?limit=0"))
+                .build();
+        HttpResponse response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(400, response.statusCode());
+        Assert.assertEquals("", response.body().toString());
+    }
+
+    private MessagePage getPage(String uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .build();
+        HttpResponse response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body().toString(), MessagePage.class);
+    }
+
+    private List<Message> expectedMessages(int fromId, int toId) {
+        List<Message> messages = new ArrayList<>();
+        for (int id = fromId; id <= toId; id++) {
+            messages.add(new Message(id, 1, "test message " + id, 1669947792));
+        }
+        return messages;
+    }
+}
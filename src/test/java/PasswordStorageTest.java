@@ -0,0 +1,85 @@
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDAO;
+import Model.Account;
+import Service.AccountService;
+import Util.ConnectionUtil;
+import Util.PasswordHasher;
+
+public class PasswordStorageTest {
+
+    AccountDAO accountDAO;
+    AccountService accountService;
+
+    /**
+     * Before every test, reset the database and create an AccountService hashing at a low cost,
+     * so the tests do not spend most of their time in PBKDF2.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        accountDAO = new AccountDAO();
+        accountService = new AccountService(accountDAO, new PasswordHasher(1000));
+    }
+
+    /**
+     * A registered password is stored as a hash, and the account can log in with the password as given.
+     */
+    @Test
+    public void registerStoresOnlyAHash() {
+        Account created = accountService.createNewAccount(new Account("user", "secret-password"));
+        Assert.assertEquals(new Account(2, "user", "secret-password"), created);
+
+        String stored = accountDAO.findAccountByUsername("user").getPassword();
+        Assert.assertNotEquals("secret-password", stored);
+        Assert.assertTrue(stored.startsWith("pbkdf2-sha256$1000$"));
+
+        Assert.assertEquals(created, accountService.getAccountByUsername(new Account("user", "secret-password")));
+        Assert.assertNull(accountService.getAccountByUsername(new Account("user", "wrong-password")));
+    }
+
+    /**
+     * An account still holding a plaintext password can log in, and its password is then re-hashed.
+     */
+    @Test
+    public void plaintextPasswordIsUpgradedOnLogin() throws InterruptedException {
+        Account loggedIn = accountService.getAccountByUsername(new Account("testuser1", "password"));
+        Assert.assertEquals(new Account(1, "testuser1", "password"), loggedIn);
+
+        String stored = accountDAO.findAccountByUsername("testuser1").getPassword();
+        for (int i = 0; i < 50 && stored.equals("password"); i++) {
+            Thread.sleep(100);
+            stored = accountDAO.findAccountByUsername("testuser1").getPassword();
+        }
+        Assert.assertTrue(stored.startsWith("pbkdf2-sha256$1000$"));
+        Assert.assertEquals(loggedIn, accountService.getAccountByUsername(new Account("testuser1", "password")));
+    }
+
+    /**
+     * The re-hash runs on the password-hashing executor, but the update that stores it runs on the
+     * DB executor, so a hashing thread never waits on JDBC.
+     */
+    @Test
+    public void passwordUpgradeWritesOnTheDbExecutor() throws InterruptedException {
+        AtomicReference<String> updatingThread = new AtomicReference<>();
+        AccountDAO recordingDAO = new AccountDAO() {
+            @Override
+            public boolean updatePassword(int account_id, String expectedPassword, String newPassword) {
+                updatingThread.set(Thread.currentThread().getName());
+                return super.updatePassword(account_id, expectedPassword, newPassword);
+            }
+        };
+        accountService = new AccountService(recordingDAO, new PasswordHasher(1000));
+
+        accountService.getAccountByUsername(new Account("testuser1", "password"));
+        for (int i = 0; i < 50 && updatingThread.get() == null; i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertNotNull(updatingThread.get());
+        Assert.assertTrue(updatingThread.get(), updatingThread.get().startsWith("db-executor-"));
+    }
+}
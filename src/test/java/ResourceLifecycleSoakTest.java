@@ -0,0 +1,85 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import Model.Message;
+import Util.ConnectionUtil;
+
+public class ResourceLifecycleSoakTest {
+    AccountDAO accountDAO;
+    MessageDAO messageDAO;
+
+    /**
+     * Number of DAO calls to make. Defaults to a size that keeps the suite fast;
+     * run with -Dsoak.requests=1000000 for the full soak.
+     */
+    int requests = Integer.getInteger("soak.requests", 50_000);
+
+    /**
+     * Before every test, reset the database and create new DAOs.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        accountDAO = new AccountDAO();
+        messageDAO = new MessageDAO();
+    }
+
+    /**
+     * Run a mix of every DAO method many times over.
+     *
+     * Expected Result:
+     *  The number of open H2 sessions is the same before and after,
+     *  and no pooled connection is left borrowed by the DAOs.
+     */
+    @Test
+    public void openSessionCountStaysFlat() throws SQLException {
+        long sessionsBefore = countOpenSessions();
+        int activeBefore = ConnectionUtil.getPoolStats().getActive();
+
+        for (int i = 0; i < requests; i++) {
+            switch (i % 6) {
+                case 0:
+                    Assert.assertNotNull(messageDAO.findMessageByMessageId(1));
+                    break;
+                case 1:
+                    Assert.assertNotNull(accountDAO.findAccountByUsername("testuser1"));
+                    break;
+                case 2:
+                    Assert.assertNotNull(accountDAO.findAccountByAccount_Id(1));
+                    break;
+                case 3:
+                    Assert.assertFalse(messageDAO.findAllMessagesWrittenByUser(1).isEmpty());
+                    break;
+                case 4:
+                    Message inserted = messageDAO.insertMessage(new Message(1, "soak " + i, 1669947792));
+                    Assert.assertEquals(inserted, messageDAO.deleteMessage(inserted.getMessage_id()));
+                    break;
+                default:
+                    Assert.assertNotNull(messageDAO.updateMessageText(1, "test message 1"));
+                    break;
+            }
+        }
+
+        Assert.assertEquals(activeBefore, ConnectionUtil.getPoolStats().getActive());
+        Assert.assertTrue(countOpenSessions() <= sessionsBefore);
+    }
+
+    private long countOpenSessions() throws SQLException {
+        Connection conn = ConnectionUtil.getConnection();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.SESSIONS")) {
+            rs.next();
+            return rs.getLong(1);
+        } finally {
+            ConnectionUtil.release(conn);
+        }
+    }
+}
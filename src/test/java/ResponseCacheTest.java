@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ResponseCacheTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Repeated GET localhost:8080/messages/1 returns the same body and ETag, and an If-None-Match
+     * naming that ETag gets an empty 304.
+     */
+    @Test
+    public void getMessageRepeatedServesSameETag() throws IOException, InterruptedException {
+        HttpResponse<String> first = get("/messages/1", null);
+        HttpResponse<String> second = get("/messages/1", null);
+
+        Assert.assertEquals(200, first.statusCode());
+        Assert.assertEquals(200, second.statusCode());
+        String etag = first.headers().firstValue("ETag").orElseThrow();
+        Assert.assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+        Assert.assertEquals(etag, second.headers().firstValue("ETag").orElseThrow());
+        Assert.assertEquals(first.body(), second.body());
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792), objectMapper.readValue(second.body(), Message.class));
+
+        HttpResponse<String> notModified = get("/messages/1", etag);
+        Assert.assertEquals(304, notModified.statusCode());
+        Assert.assertEquals("", notModified.body());
+        Assert.assertEquals(etag, notModified.headers().firstValue("ETag").orElseThrow());
+    }
+
+    /**
+     * Updating a message drops its cached response, so the next GET has the new text and a new ETag
+     * and the old ETag no longer gets a 304.
+     */
+    @Test
+    public void getMessageAfterUpdateServesNewBody() throws IOException, InterruptedException {
+        String etag = get("/messages/1", null).headers().firstValue("ETag").orElseThrow();
+
+        HttpRequest patch = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated message\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(patch, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> response = get("/messages/1", etag);
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertNotEquals(etag, response.headers().firstValue("ETag").orElseThrow());
+        Assert.assertEquals(new Message(1, 1, "updated message", 1669947792), objectMapper.readValue(response.body(), Message.class));
+    }
+
+    /**
+     * A new message by account 1 drops the cached GET localhost:8080/accounts/1/messages.
+     */
+    @Test
+    public void getAccountMessagesAfterCreateServesNewBody() throws IOException, InterruptedException {
+        HttpResponse<String> before = get("/accounts/1/messages", null);
+        String etag = before.headers().firstValue("ETag").orElseThrow();
+        Assert.assertEquals(304, get("/accounts/1/messages", etag).statusCode());
+
+        HttpRequest post = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\": 1, \"message_text\": \"another message\", \"time_posted_epoch\": 1669947793}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(post, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> after = get("/accounts/1/messages", etag);
+        Assert.assertEquals(200, after.statusCode());
+        Assert.assertNotEquals(etag, after.headers().firstValue("ETag").orElseThrow());
+        Message[] messages = objectMapper.readValue(after.body(), Message[].class);
+        Assert.assertEquals(objectMapper.readValue(before.body(), Message[].class).length + 1, messages.length);
+        Assert.assertEquals("another message", messages[messages.length - 1].getMessage_text());
+    }
+
+    /**
+     * Reads that fail while the message table is unavailable get a 500 with no ETag, and nothing is
+     * cached for them: once the table is back the real message and list are served.
+     */
+    @Test
+    public void failedReadIsNotCached() throws IOException, InterruptedException, SQLException {
+        renameMessageTable("message", "message_unavailable");
+        try {
+            for (String path : new String[] { "/messages/1", "/accounts/1/messages" }) {
+                HttpResponse<String> failed = get(path, null);
+                Assert.assertEquals(500, failed.statusCode());
+                Assert.assertEquals("", failed.body());
+                Assert.assertTrue(failed.headers().firstValue("ETag").isEmpty());
+            }
+        } finally {
+            renameMessageTable("message_unavailable", "message");
+        }
+
+        Message expected = new Message(1, 1, "test message 1", 1669947792);
+        HttpResponse<String> message = get("/messages/1", null);
+        Assert.assertEquals(200, message.statusCode());
+        Assert.assertEquals(expected, objectMapper.readValue(message.body(), Message.class));
+
+        HttpResponse<String> messages = get("/accounts/1/messages", null);
+        Assert.assertEquals(200, messages.statusCode());
+        Assert.assertArrayEquals(new Message[] { expected }, objectMapper.readValue(messages.body(), Message[].class));
+    }
+
+    private void renameMessageTable(String from, String to) throws SQLException {
+        Connection conn = ConnectionUtil.getConnection();
+        try (PreparedStatement ps = conn.prepareStatement("ALTER TABLE " + from + " RENAME TO " + to)) {
+            ps.executeUpdate();
+        } finally {
+            ConnectionUtil.release(conn);
+        }
+    }
+
+    private HttpResponse<String> get(String path, String ifNoneMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path));
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
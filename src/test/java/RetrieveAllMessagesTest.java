@@ -97,7 +97,37 @@ public class RetrieveAllMessagesTest {
         Assert.assertTrue(messages.isEmpty());
     }
 
+    /**
+     * Sending an http request to GET localhost:8080/messages while the message table can not be read
+     * 
+     * Expected Response:
+     *  Status Code: 500
+     *  Response Body: empty, never an empty or partial JSON list
+     */
+    @Test
+    public void getAllMessagesQueryFails() throws IOException, InterruptedException, SQLException {
+        renameMessageTable("message", "message_unavailable");
+        try {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .build();
+            HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+            Assert.assertEquals(500, response.statusCode());
+            Assert.assertEquals("", response.body());
+        } finally {
+            renameMessageTable("message_unavailable", "message");
+        }
+    }
 
+    private void renameMessageTable(String from, String to) throws SQLException {
+        Connection conn = ConnectionUtil.getConnection();
+        try (PreparedStatement ps = conn.prepareStatement("ALTER TABLE " + from + " RENAME TO " + to)) {
+            ps.executeUpdate();
+        } finally {
+            ConnectionUtil.release(conn);
+        }
+    }
 
     private void removeInitialMessage(){
         try {
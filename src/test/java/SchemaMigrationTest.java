@@ -0,0 +1,41 @@
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.JdbcTemplate;
+import DAO.StatementBinder;
+import Util.ConnectionUtil;
+
+public class SchemaMigrationTest {
+
+    JdbcTemplate jdbc;
+
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        jdbc = new JdbcTemplate();
+    }
+
+    /**
+     * Migrating an up-to-date database applies nothing and succeeds.
+     */
+    @Test
+    public void migrateUpToDateDatabaseSucceeds() {
+        ConnectionUtil.migrateDatabase();
+    }
+
+    /**
+     * A migration that fails stops startup instead of leaving the app to serve on a half-migrated schema.
+     *
+     * Expected Response:
+     *  migrateDatabase() throws IllegalStateException
+     */
+    @Test
+    public void failedMigrationThrows() {
+        // forget V3 and drop the table it indexes, so re-applying it fails
+        jdbc.update("DELETE FROM schema_version WHERE version = 3", StatementBinder.NONE);
+        jdbc.update("DROP TABLE message", StatementBinder.NONE);
+
+        Assert.assertThrows(IllegalStateException.class, ConnectionUtil::migrateDatabase);
+    }
+}
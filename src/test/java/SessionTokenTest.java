@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class SessionTokenTest {
+
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private String login() throws IOException, InterruptedException {
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"username\": \"testuser1\", " +
+                        "\"password\": \"password\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        return response.headers().firstValue("X-Auth-Token").orElseThrow();
+    }
+
+    private HttpResponse<String> postMessage(int posted_by, String authorization) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"posted_by\":" + posted_by + ", " +
+                        "\"message_text\": \"hello message\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .header("Authorization", authorization)
+                .build();
+        return webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with the token from /login
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the created message
+     */
+    @Test
+    public void postMessageWithTokenSuccessful() throws IOException, InterruptedException {
+        HttpResponse<String> response = postMessage(1, "Bearer " + login());
+
+        Assert.assertEquals(200, response.statusCode());
+        Message expectedResult = new Message(2, 1, "hello message", 1669947792);
+        Assert.assertEquals(expectedResult, objectMapper.readValue(response.body(), Message.class));
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with a posted_by other than the token's account
+     *
+     * Expected Response:
+     *  Status Code: 403
+     *  Response Body:
+     */
+    @Test
+    public void postMessageForAnotherAccountForbidden() throws IOException, InterruptedException {
+        HttpResponse<String> response = postMessage(2, "Bearer " + login());
+
+        Assert.assertEquals(403, response.statusCode());
+        Assert.assertEquals("", response.body());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with a tampered or malformed token
+     *
+     * Expected Response:
+     *  Status Code: 401
+     *  Response Body:
+     */
+    @Test
+    public void postMessageWithInvalidTokenUnauthorized() throws IOException, InterruptedException {
+        String token = login();
+        String forged = "2" + token.substring(token.indexOf('.'));
+
+        Assert.assertEquals(401, postMessage(2, "Bearer " + forged).statusCode());
+        Assert.assertEquals(401, postMessage(1, "Bearer not-a-token").statusCode());
+        Assert.assertEquals("", postMessage(1, "Basic dXNlcjpwYXNz").body());
+    }
+}
@@ -0,0 +1,185 @@
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+import Util.ConnectionPool;
+import Util.ConnectionUtil;
+import Util.PoolConfig;
+import Util.PoolStats;
+
+public class StatementCacheTest {
+
+    private static final String SQL = "SELECT * FROM message WHERE message_id = ?";
+
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+    }
+
+    /**
+     * Preparing the same SQL again on a connection reuses the cached statement, with its
+     * parameters cleared.
+     */
+    @Test
+    public void preparedStatementIsReused() throws SQLException {
+        Connection conn = ConnectionUtil.getConnection();
+        try {
+            readMessageText(conn, 1);
+            PoolStats before = ConnectionUtil.getPoolStats();
+            Assert.assertEquals("test message 1", readMessageText(conn, 1));
+            PoolStats after = ConnectionUtil.getPoolStats();
+
+            Assert.assertEquals(before.getStatementCacheHits() + 1, after.getStatementCacheHits());
+            Assert.assertEquals(before.getStatementCacheMisses(), after.getStatementCacheMisses());
+
+            try (PreparedStatement ps = conn.prepareStatement(SQL)) {
+                Assert.assertThrows(SQLException.class, ps::executeQuery);
+            }
+        } finally {
+            ConnectionUtil.release(conn);
+        }
+    }
+
+    /**
+     * A statement in use is never handed out twice, and a closed one can not be used again.
+     */
+    @Test
+    public void statementInUseIsNotShared() throws SQLException {
+        Connection conn = ConnectionUtil.getConnection();
+        try {
+            PreparedStatement first = conn.prepareStatement(SQL);
+            PreparedStatement second = conn.prepareStatement(SQL);
+            first.setInt(1, 1);
+            second.setInt(1, 2);
+            try (ResultSet rs = first.executeQuery()) {
+                Assert.assertTrue(rs.next());
+            }
+            try (ResultSet rs = second.executeQuery()) {
+                Assert.assertFalse(rs.next());
+            }
+            first.close();
+            second.close();
+
+            Assert.assertTrue(first.isClosed());
+            Assert.assertThrows(SQLException.class, first::executeQuery);
+        } finally {
+            ConnectionUtil.release(conn);
+        }
+    }
+
+    /**
+     * Closing a statement closes the ResultSet the caller left open, even though the statement
+     * itself stays open in the cache.
+     */
+    @Test
+    public void recycledStatementClosesItsResultSet() throws SQLException {
+        Connection conn = ConnectionUtil.getConnection();
+        try {
+            PreparedStatement ps = conn.prepareStatement(SQL);
+            ps.setInt(1, 1);
+            ResultSet rs = ps.executeQuery();
+            ps.close();
+
+            Assert.assertTrue(rs.isClosed());
+        } finally {
+            ConnectionUtil.release(conn);
+        }
+    }
+
+    /**
+     * Statements waiting in a connection's cache are closed when the connection is.
+     */
+    @Test
+    public void cachedStatementsAreClosedWithTheConnection() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:statement-cache-test");
+        PoolConfig config = new PoolConfig();
+        config.setMinIdle(0);
+        ConnectionPool pool = new ConnectionPool(dataSource, config);
+
+        Connection conn = pool.getConnection();
+        PreparedStatement ps = conn.prepareStatement("SELECT 1");
+        PreparedStatement cached = ps.unwrap(PreparedStatement.class);
+        ps.close();
+        conn.close();
+        Assert.assertFalse(cached.isClosed());
+
+        pool.close();
+        Assert.assertTrue(cached.isClosed());
+    }
+
+    /**
+     * A cached statement whose query fails because the connection itself failed (SQLState class 08)
+     * marks the connection broken, so it is thrown away when released instead of being reused.
+     */
+    @Test
+    public void connectionFailureInCachedStatementDiscardsTheConnection() throws SQLException {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:statement-cache-broken-test");
+        // every statement fails its queries as if the network connection had dropped
+        DataSource dataSource = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {DataSource.class},
+                (proxy, method, args) -> method.getName().equals("getConnection")
+                        ? failingQueries(h2.getConnection())
+                        : invoke(h2, method, args));
+        PoolConfig config = new PoolConfig();
+        config.setMinIdle(0);
+        ConnectionPool pool = new ConnectionPool(dataSource, config);
+
+        Connection conn = pool.getConnection();
+        try (PreparedStatement ps = conn.prepareStatement("SELECT 1")) {
+            SQLException e = Assert.assertThrows(SQLException.class, ps::executeQuery);
+            Assert.assertEquals("08006", e.getSQLState());
+        }
+        conn.close();
+
+        Assert.assertEquals(0, pool.getStats().getTotal());
+        pool.close();
+    }
+
+    private static Connection failingQueries(Connection physical) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(physical, method, args);
+                    if (!method.getName().equals("prepareStatement")) {
+                        return result;
+                    }
+                    PreparedStatement statement = (PreparedStatement) result;
+                    return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[] {PreparedStatement.class},
+                            (statementProxy, statementMethod, statementArgs) -> {
+                                if (statementMethod.getName().equals("executeQuery")) {
+                                    throw new SQLException("Connection reset", "08006");
+                                }
+                                return invoke(statement, statementMethod, statementArgs);
+                            });
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private String readMessageText(Connection conn, int message_id) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SQL)) {
+            ps.setInt(1, message_id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString("message_text") : null;
+            }
+        }
+    }
+}
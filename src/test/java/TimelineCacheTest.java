@@ -0,0 +1,126 @@
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.DataAccessException;
+import DAO.MessageDAO;
+import Model.Message;
+import Model.MessagePage;
+import Service.MessageService;
+import Service.TimelineCache;
+import Util.ConnectionUtil;
+
+public class TimelineCacheTest {
+
+    MessageService messageService;
+
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        messageService = new MessageService(new MessageDAO());
+    }
+
+    /**
+     * Once an account's timeline is cached, creates and deletes are applied to it in place and it
+     * keeps answering without a reload; an update drops it and the next read loads it again.
+     */
+    @Test
+    public void writesKeepTheCachedTimelineCurrent() {
+        Message first = new Message(1, 1, "test message 1", 1669947792);
+        Assert.assertEquals(List.of(first), messageService.getMessagesWrittenByUser(1));
+
+        Message second = messageService.createNewMessage(new Message(1, "second message", 1669947793));
+        Assert.assertEquals(List.of(first, second), messageService.getMessagesWrittenByUser(1));
+        Assert.assertEquals(1, messageService.getTimelineCacheStats().getMisses());
+
+        Message updated = messageService.updateMessageByMessageId(1, new Message(0, "updated message", 0));
+        Assert.assertEquals(List.of(updated, second), messageService.getMessagesWrittenByUser(1));
+        Assert.assertEquals(2, messageService.getTimelineCacheStats().getMisses());
+
+        messageService.deleteMessageByMessageId(1);
+        Assert.assertEquals(List.of(second), messageService.getMessagesWrittenByUser(1));
+        Assert.assertEquals(2, messageService.getTimelineCacheStats().getMisses());
+
+        MessagePage page = messageService.getMessagesWrittenByUserPage(1, 1, 10);
+        Assert.assertEquals(List.of(second), page.getMessages());
+    }
+
+    /**
+     * A write that lands while a timeline is being loaded keeps the load from being installed.
+     */
+    @Test
+    public void writeDuringLoadIsNotLost() {
+        TimelineCache cache = new TimelineCache(1024 * 1024, 1000);
+        Message first = new Message(1, 1, "first", 1);
+        Object stamp = cache.startLoad(1);
+        cache.added(new Message(2, 1, "second", 2));
+        cache.finishLoad(1, stamp, List.of(first));
+
+        Assert.assertNull(cache.get(1));
+    }
+
+    /**
+     * An update keeps a load in progress from being installed, since the load may have read the old text.
+     */
+    @Test
+    public void updateDuringLoadIsNotLost() {
+        TimelineCache cache = new TimelineCache(1024 * 1024, 1000);
+        Object stamp = cache.startLoad(1);
+        cache.updated(new Message(1, 1, "updated", 1));
+        cache.finishLoad(1, stamp, List.of(new Message(1, 1, "first", 1)));
+
+        Assert.assertNull(cache.get(1));
+    }
+
+    /**
+     * A load that fails caches nothing, rather than an empty timeline, and the next read loads the
+     * account again once the database is back.
+     */
+    @Test
+    public void failedLoadIsNotCached() {
+        FailingMessageDAO messageDAO = new FailingMessageDAO();
+        messageService = new MessageService(messageDAO);
+
+        messageDAO.failing = true;
+        Assert.assertThrows(DataAccessException.class, () -> messageService.getMessagesWrittenByUser(1));
+        Assert.assertEquals(0, messageService.getTimelineCacheStats().getSize());
+
+        messageDAO.failing = false;
+        Assert.assertEquals(List.of(new Message(1, 1, "test message 1", 1669947792)), messageService.getMessagesWrittenByUser(1));
+        Assert.assertEquals(1, messageService.getTimelineCacheStats().getSize());
+    }
+
+    /**
+     * Least recently used timelines are evicted to stay within the byte budget.
+     */
+    @Test
+    public void byteBudgetEvictsLeastRecentlyUsed() {
+        TimelineCache cache = new TimelineCache(400, 1000);
+        for (int account_id = 1; account_id <= 3; account_id++) {
+            cache.finishLoad(account_id, cache.startLoad(account_id), List.of(new Message(account_id, account_id, "text", 1)));
+        }
+
+        Assert.assertNull(cache.get(1));
+        Assert.assertNotNull(cache.get(3));
+        Assert.assertTrue(cache.getBytes() <= 400);
+        Assert.assertTrue(cache.getStats().getEvictions() > 0);
+    }
+
+    /**
+     * A MessageDAO whose timeline queries fail the way they do when no pooled connection becomes available.
+     */
+    private static class FailingMessageDAO extends MessageDAO {
+        volatile boolean failing;
+
+        @Override
+        public List<Message> findAllMessagesWrittenByUser(int posted_by) {
+            if (failing) {
+                throw new DataAccessException(new SQLException("No database connection available"));
+            }
+            return super.findAllMessagesWrittenByUser(posted_by);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+import org.eclipse.jetty.util.VirtualThreads;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+
+public class VirtualExecutionModeTest {
+
+    @After
+    public void tearDown() {
+        System.clearProperty("api.executionMode");
+    }
+
+    /**
+     * Asking for "virtual" execution on a JVM without virtual threads stops startup instead of
+     * quietly running on the platform pool.
+     *
+     * Expected Response:
+     *  startAPI() throws IllegalStateException
+     */
+    @Test
+    public void virtualModeWithoutVirtualThreadsFailsStartup() {
+        Assume.assumeFalse(VirtualThreads.areSupported());
+        System.setProperty("api.executionMode", "virtual");
+        Assert.assertThrows(IllegalStateException.class, () -> new SocialMediaController().startAPI());
+    }
+}
@@ -0,0 +1,168 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import DAO.MessageDAO;
+import Model.Message;
+import Service.MessageService;
+import Service.MessageWriteBehindQueue;
+import Service.WriteQueueStats;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class WriteBehindMessageInsertTest {
+    MessageDAO messageDAO;
+    MessageWriteBehindQueue writeQueue;
+    MessageService messageService;
+
+    /**
+     * Before every test, reset the database and create a MessageService in write-behind mode.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        messageDAO = new MessageDAO();
+        writeQueue = new MessageWriteBehindQueue(messageDAO, 1000, 50, 20);
+        messageService = new MessageService(messageDAO, writeQueue);
+    }
+
+    @After
+    public void tearDown() {
+        writeQueue.close();
+    }
+
+    /**
+     * Post 200 messages without waiting for each other.
+     *
+     * Expected Result:
+     *  Every future completes with a distinct generated message_id, all messages are stored,
+     *  and they were written in fewer commits than messages.
+     */
+    @Test
+    public void createMessagesGroupCommitted() {
+        List<CompletableFuture<Message>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(messageService.createNewMessageAsync(new Message(1, "queued " + i, 1669947792)));
+        }
+
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < futures.size(); i++) {
+            Message inserted = futures.get(i).join();
+            Assert.assertNotNull(inserted);
+            Assert.assertEquals("queued " + i, inserted.getMessage_text());
+            ids.add(inserted.getMessage_id());
+        }
+        Assert.assertEquals(200, ids.size());
+        Assert.assertEquals(201, messageDAO.findAllMessages().size());
+
+        WriteQueueStats stats = messageService.getWriteQueueStats();
+        Assert.assertEquals(200, stats.getRowsFlushed());
+        Assert.assertTrue(stats.getFlushes() < 200);
+    }
+
+    /**
+     * Post a blank message in write-behind mode.
+     *
+     * Expected Result:
+     *  It is rejected before reaching the queue.
+     */
+    @Test
+    public void createMessageBlankRejected() {
+        Assert.assertNull(messageService.createNewMessage(new Message(1, "", 1669947792)));
+        Assert.assertEquals(0, messageService.getWriteQueueStats().getFlushes());
+    }
+
+    /**
+     * Post four messages that share one commit, one of them from an account that does not exist.
+     *
+     * Expected Result:
+     *  The database refuses that one message; the other three are still written.
+     */
+    @Test
+    public void createMessagesOneRefusedFailsAlone() {
+        writeQueue.close();
+        writeQueue = new MessageWriteBehindQueue(messageDAO, 1000, 50, 200);
+        messageService = new MessageService(messageDAO, writeQueue);
+
+        List<CompletableFuture<Message>> futures = new ArrayList<>();
+        for (int posted_by : new int[] { 1, 99, 1, 1 }) {
+            futures.add(messageService.createNewMessageAsync(new Message(posted_by, "shared commit", 1669947792)));
+        }
+
+        Assert.assertNotNull(futures.get(0).join());
+        Assert.assertNull(futures.get(1).join());
+        Assert.assertNotNull(futures.get(2).join());
+        Assert.assertNotNull(futures.get(3).join());
+        Assert.assertEquals(4, messageDAO.findAllMessages().size());
+        Assert.assertEquals(3, messageService.getWriteQueueStats().getRowsFlushed());
+        Assert.assertEquals(1, messageService.getWriteQueueStats().getFailedFlushes());
+    }
+
+    /**
+     * Close the queue while messages are still waiting for their commit.
+     *
+     * Expected Result:
+     *  Every waiting message is written before close() returns, and later messages are inserted directly.
+     */
+    @Test
+    public void closeWritesQueuedMessages() {
+        writeQueue.close();
+        writeQueue = new MessageWriteBehindQueue(messageDAO, 1000, 50, 200);
+        messageService = new MessageService(messageDAO, writeQueue);
+
+        List<CompletableFuture<Message>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(messageService.createNewMessageAsync(new Message(1, "queued " + i, 1669947792)));
+        }
+        messageService.close();
+
+        for (CompletableFuture<Message> future : futures) {
+            Assert.assertTrue(future.isDone());
+            Assert.assertNotNull(future.join());
+        }
+        Assert.assertNull(writeQueue.submit(new Message(1, "after close", 1669947792)));
+        Assert.assertNotNull(messageService.createNewMessage(new Message(1, "after close", 1669947792)));
+        Assert.assertEquals(7, messageDAO.findAllMessages().size());
+    }
+
+    /**
+     * Stop an app running in write-behind mode.
+     *
+     * Expected Result:
+     *  Its write-behind writer thread is stopped with it.
+     */
+    @Test
+    public void stoppingTheAppClosesTheQueue() {
+        long writersBefore = countWriterThreads();
+        String enabled = System.setProperty("messages.writeBehind.enabled", "true");
+        Javalin app;
+        try {
+            app = new SocialMediaController().startAPI();
+        } finally {
+            if (enabled == null) {
+                System.clearProperty("messages.writeBehind.enabled");
+            } else {
+                System.setProperty("messages.writeBehind.enabled", enabled);
+            }
+        }
+        app.start(8080);
+        Assert.assertEquals(writersBefore + 1, countWriterThreads());
+
+        app.stop();
+        Assert.assertEquals(writersBefore, countWriterThreads());
+    }
+
+    private static long countWriterThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("message-write-behind") && thread.isAlive())
+                .count();
+    }
+}